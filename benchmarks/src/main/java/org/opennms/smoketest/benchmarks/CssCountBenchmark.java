@@ -0,0 +1,77 @@
+package org.opennms.smoketest.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.opennms.smoketest.dom.DomSnapshotCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * <code>countElementsMatchingCss</code> on the synthetic node list: parsing the
+ * page source for every call, against {@link DomSnapshotCache} when the page
+ * hasn't changed between calls and when it has.
+ *
+ * The driver is a stub that serves the synthetic page, so this measures only
+ * the parsing and selection, not the round trips to the browser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CssCountBenchmark {
+    private static final String URL = "http://localhost:8980/opennms/element/nodeList.htm";
+    private static final String SELECTOR = "#content ul.list-unstyled > li > a[href^=element/node.jsp]";
+
+    private String m_page;
+    private DomSnapshotCache m_cache;
+
+    @Setup
+    public void setUp() {
+        m_page = Fixtures.getString("nodeList.html");
+        m_cache = new DomSnapshotCache(stubDriver(m_page));
+    }
+
+    @Benchmark
+    public int parseEveryCall() {
+        return Jsoup.parse(m_page, URL).select(SELECTOR).size();
+    }
+
+    @Benchmark
+    public int snapshotUnchanged() {
+        return m_cache.count(SELECTOR);
+    }
+
+    @Benchmark
+    public int snapshotChanged() {
+        m_cache.invalidate();
+        return m_cache.count(SELECTOR);
+    }
+
+    private static WebDriver stubDriver(final String page) {
+        return (WebDriver)Proxy.newProxyInstance(CssCountBenchmark.class.getClassLoader(), new Class<?>[] { WebDriver.class, JavascriptExecutor.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "getPageSource": return page;
+                    case "getCurrentUrl": return URL;
+                    // the page version script: same URL, same token, no mutations
+                    case "executeScript": return URL + "|benchmark|0";
+                    case "hashCode": return System.identityHashCode(proxy);
+                    case "equals": return proxy == args[0];
+                    case "toString": return "StubWebDriver";
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,43 @@
+package org.opennms.smoketest.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Synthetic responses for a 200-node requisition, so the benchmarks run
+ * offline and always see the same input.  They follow the shape of what
+ * OpenNMS 17 returns for these URLs, but were generated, not captured from a
+ * running instance.
+ *
+ * <ul>
+ * <li><code>nodes.xml</code>: <code>/rest/nodes?limit=0</code></li>
+ * <li><code>requisition.xml</code>: <code>/rest/requisitions/SeleniumTestGroup</code></li>
+ * <li><code>nodeList.html</code>: <code>/element/nodeList.htm</code></li>
+ * </ul>
+ */
+public abstract class Fixtures {
+    public static final int NODE_COUNT = 200;
+
+    public static byte[] getBytes(final String name) {
+        try (final InputStream is = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (is == null) {
+                throw new IllegalArgumentException("No fixture named " + name);
+            }
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                baos.write(buffer, 0, read);
+            }
+            return baos.toByteArray();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to read fixture " + name, e);
+        }
+    }
+
+    public static String getString(final String name) {
+        return new String(getBytes(name), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package org.opennms.smoketest.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.opennms.smoketest.ResponseData;
+import org.opennms.smoketest.http.SharedHttpClient;
+import org.opennms.smoketest.http.XmlCounts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The per-request overhead of <code>getRequest</code> and the count helpers,
+ * against a stub server on the loopback interface that replays the synthetic
+ * REST responses.  <code>newClientPerRequest</code> is how requests used to be
+ * made, with a fresh client (and connection, and auth challenge) every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpClientBenchmark {
+    private static final String USERNAME = "admin";
+    private static final String PASSWORD = "admin";
+
+    private HttpServer m_server;
+    private ExecutorService m_executor;
+    private SharedHttpClient m_client;
+    private String m_baseUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        // otherwise Nagle's algorithm and delayed ACKs add ~40ms to every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        m_server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        m_server.createContext("/opennms/rest/nodes", new FixtureHandler("nodes.xml"));
+        m_server.createContext("/opennms/rest/requisitions/SeleniumTestGroup", new FixtureHandler("requisition.xml"));
+        m_executor = Executors.newFixedThreadPool(4);
+        m_server.setExecutor(m_executor);
+        m_server.start();
+
+        m_baseUrl = "http://127.0.0.1:" + m_server.getAddress().getPort() + "/opennms/rest/";
+        m_client = new SharedHttpClient(USERNAME, PASSWORD, 20, 40);
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_server.stop(0);
+        m_executor.shutdownNow();
+    }
+
+    @Benchmark
+    public ResponseData getRequestShared() throws IOException {
+        return m_client.execute(new HttpGet(m_baseUrl + "requisitions/SeleniumTestGroup"));
+    }
+
+    @Benchmark
+    public int getRequestNewClientPerRequest() throws IOException {
+        final CredentialsProvider credsProvider = new BasicCredentialsProvider();
+        credsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(USERNAME, PASSWORD));
+        try (final CloseableHttpClient client = HttpClients.custom().setDefaultCredentialsProvider(credsProvider).build()) {
+            return client.execute(new HttpGet(m_baseUrl + "requisitions/SeleniumTestGroup"), SharedHttpClient.RESPONSE_DATA_HANDLER).getStatus();
+        }
+    }
+
+    @Benchmark
+    public long nodesInDatabase() throws IOException {
+        return m_client.execute(new HttpGet(m_baseUrl + "nodes?limit=0"), XmlCounts.TOTAL_COUNT_HANDLER);
+    }
+
+    @Benchmark
+    public long nodesInRequisition() throws IOException {
+        return m_client.execute(new HttpGet(m_baseUrl + "requisitions/SeleniumTestGroup"), XmlCounts.NODE_CHILDREN_HANDLER);
+    }
+
+    /**
+     * Answers with a fixture, challenging requests without credentials like Jetty does.
+     */
+    private static final class FixtureHandler implements HttpHandler {
+        private final byte[] m_body;
+
+        private FixtureHandler(final String fixture) {
+            m_body = Fixtures.getBytes(fixture);
+        }
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            try {
+                if (exchange.getRequestHeaders().getFirst("Authorization") == null) {
+                    exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"OpenNMS Realm\"");
+                    exchange.sendResponseHeaders(401, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/xml");
+                exchange.sendResponseHeaders(200, m_body.length);
+                try (final OutputStream os = exchange.getResponseBody()) {
+                    os.write(m_body);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.opennms.smoketest.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.smoketest.RequisitionXml;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generating requisition XML with {@link RequisitionXml}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RequisitionXmlBenchmark {
+    @Param({"1", "100", "1000"})
+    public int nodes;
+
+    @Benchmark
+    public String generate() {
+        final RequisitionXml requisition = new RequisitionXml("SeleniumTestGroup");
+        for (int i = 1; i <= nodes; i++) {
+            requisition.node(Integer.toString(i), "node-" + i + ".example.org")
+                .iface("10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff))
+                .service("ICMP").service("SNMP")
+                .category("Servers");
+        }
+        return requisition.toXml();
+    }
+}
@@ -0,0 +1,68 @@
+package org.opennms.smoketest.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.smoketest.expectations.MultiStringMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * <code>Expectation</code> text matching on the synthetic node list: one
+ * {@link MultiStringMatcher} pass, against a <code>contains()</code> per
+ * expected string.  The strings are node labels spread over the page, plus one
+ * that isn't there so neither side can stop early.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextMatchBenchmark {
+    @Param({"1", "10", "50"})
+    public int patterns;
+
+    private String m_page;
+    private List<String> m_patterns;
+    private MultiStringMatcher m_matcher;
+
+    @Setup
+    public void setUp() {
+        m_page = Fixtures.getString("nodeList.html");
+        m_patterns = new ArrayList<>();
+        for (int i = 1; i < patterns; i++) {
+            m_patterns.add(String.format("node-%03d.example.org", i * Fixtures.NODE_COUNT / patterns));
+        }
+        m_patterns.add("Hide unmanaged interfaces");
+        m_matcher = new MultiStringMatcher(m_patterns);
+    }
+
+    @Benchmark
+    public int multiStringMatcher() {
+        return m_matcher.scan(m_page, new boolean[m_patterns.size()], m_patterns.size());
+    }
+
+    @Benchmark
+    public int containsEach() {
+        int found = 0;
+        for (final String pattern : m_patterns) {
+            if (m_page.contains(pattern)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Building the automaton, which happens once per expectation check.
+     */
+    @Benchmark
+    public MultiStringMatcher buildMatcher() {
+        return new MultiStringMatcher(m_patterns);
+    }
+}
@@ -0,0 +1,70 @@
+package org.opennms.smoketest.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.opennms.smoketest.http.XmlCounts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * The node counts behind <code>getNodesInDatabase</code> and
+ * <code>getNodesInRequisition</code>: streaming with {@link XmlCounts}, against
+ * parsing the whole response into a DOM the way they used to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XmlCountsBenchmark {
+    private byte[] m_nodes;
+    private byte[] m_requisition;
+    private DocumentBuilder m_documentBuilder;
+
+    @Setup
+    public void setUp() throws Exception {
+        m_nodes = Fixtures.getBytes("nodes.xml");
+        m_requisition = Fixtures.getBytes("requisition.xml");
+        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        m_documentBuilder = factory.newDocumentBuilder();
+    }
+
+    @Benchmark
+    public long totalCountStreaming() throws IOException {
+        return XmlCounts.readTotalCount(new ByteArrayInputStream(m_nodes));
+    }
+
+    @Benchmark
+    public long totalCountDom() throws Exception {
+        final Document doc = m_documentBuilder.parse(new ByteArrayInputStream(m_nodes));
+        return Long.valueOf(doc.getDocumentElement().getAttribute("totalCount"), 10);
+    }
+
+    @Benchmark
+    public long requisitionNodesStreaming() throws IOException {
+        return XmlCounts.countChildElements(new ByteArrayInputStream(m_requisition), "node");
+    }
+
+    @Benchmark
+    public long requisitionNodesDom() throws Exception {
+        final Document doc = m_documentBuilder.parse(new ByteArrayInputStream(m_requisition));
+        long count = 0;
+        for (Node child = doc.getDocumentElement().getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE && "node".equals(child.getLocalName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,135 @@
+package org.opennms.smoketest;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps track of the fixtures a test has created or changed, so teardown
+ * only has to undo those.
+ *
+ * The REST helpers in {@link OpenNMSSeleniumTestCase} pass every POST and PUT
+ * through {@link #request(String, String)}, which works out what was touched
+ * from the URL, or from the body when the URL is a collection.  Anything a
+ * test changes through the UI isn't seen here, so teardown still checks
+ * whether the default fixtures exist.
+ */
+public class FixtureTracker {
+    public static enum Kind {
+        REQUISITION("requisitions", Pattern.compile("foreign-source=\"([^\"]+)\"")),
+        FOREIGN_SOURCE("foreignSources", Pattern.compile("<foreign-source[^>]*\\sname=\"([^\"]+)\"")),
+        USER("users", Pattern.compile("<user-id>\\s*([^<\\s]+)\\s*</user-id>")),
+        GROUP("groups", Pattern.compile("<name>\\s*([^<\\s]+)\\s*</name>"));
+
+        private final String m_resource;
+        private final Pattern m_bodyPattern;
+
+        private Kind(final String resource, final Pattern bodyPattern) {
+            m_resource = resource;
+            m_bodyPattern = bodyPattern;
+        }
+    }
+
+    private final Map<Kind,Set<String>> m_dirty = new EnumMap<>(Kind.class);
+
+    public FixtureTracker() {
+        for (final Kind kind : Kind.values()) {
+            m_dirty.put(kind, Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>()));
+        }
+    }
+
+    public void mark(final Kind kind, final String name) {
+        if (name != null && !name.isEmpty()) {
+            m_dirty.get(kind).add(name);
+        }
+    }
+
+    /**
+     * Mark whatever a POST or PUT to the given REST URL changes.
+     */
+    public void request(final String urlFragment, final String body) {
+        String path = urlFragment;
+        final int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        final List<String> segments = new ArrayList<>();
+        for (final String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        if (!segments.isEmpty() && "rest".equals(segments.get(0))) {
+            segments.remove(0);
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        for (final Kind kind : Kind.values()) {
+            if (!kind.m_resource.equals(segments.get(0))) {
+                continue;
+            }
+            // requisitions and foreign sources also have a "deployed" copy
+            int index = 1;
+            if (segments.size() > index && "deployed".equals(segments.get(index))) {
+                index++;
+            }
+            if (segments.size() > index) {
+                mark(kind, decode(segments.get(index)));
+            } else if (body != null) {
+                final Matcher m = kind.m_bodyPattern.matcher(body);
+                if (m.find()) {
+                    mark(kind, m.group(1));
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Take everything marked so far, leaving nothing marked.
+     */
+    public Map<Kind,Set<String>> drain() {
+        final Map<Kind,Set<String>> drained = new EnumMap<>(Kind.class);
+        for (final Kind kind : Kind.values()) {
+            final Set<String> names = new TreeSet<>();
+            final Set<String> dirty = m_dirty.get(kind);
+            for (final String name : dirty) {
+                if (dirty.remove(name)) {
+                    names.add(name);
+                }
+            }
+            drained.put(kind, names);
+        }
+        return drained;
+    }
+
+    /**
+     * Forget the given fixtures; teardown marks what it deletes, too.
+     */
+    public void unmark(final Kind kind, final Set<String> names) {
+        m_dirty.get(kind).removeAll(names);
+    }
+
+    @Override
+    public String toString() {
+        return "FixtureTracker" + m_dirty;
+    }
+
+    private static String decode(final String segment) {
+        try {
+            return URLDecoder.decode(segment, "UTF-8");
+        } catch (final UnsupportedEncodingException e) {
+            return segment;
+        }
+    }
+}
@@ -34,10 +34,9 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -45,44 +44,55 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
-import org.apache.http.HttpResponse;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.AuthCache;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.auth.BasicScheme;
-import org.apache.http.impl.client.BasicAuthCache;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-import org.jsoup.Jsoup;
-import org.jsoup.select.Elements;
 import org.junit.Rule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
+import org.opennms.smoketest.dom.DomQuery;
+import org.opennms.smoketest.dom.DomSnapshotCache;
+import org.opennms.smoketest.expectations.Expectation;
+import org.opennms.smoketest.expectations.ExpectationCrawler;
+import org.opennms.smoketest.expectations.ExpectationFailed;
+import org.opennms.smoketest.http.AsyncRestClient;
+import org.opennms.smoketest.http.SharedHttpClient;
+import org.opennms.smoketest.http.XmlCounts;
+import org.opennms.smoketest.instrumentation.ServerActivityMonitor;
+import org.opennms.smoketest.journal.Journal;
+import org.opennms.smoketest.timing.Baselines;
+import org.opennms.smoketest.timing.PageTiming;
+import org.opennms.smoketest.timing.PageTimings;
+import org.opennms.smoketest.timing.StepTimings;
+import org.opennms.smoketest.wait.Backoff;
+import org.opennms.smoketest.wait.BackoffWait;
+import org.opennms.smoketest.wait.Poller;
+import org.opennms.smoketest.webdriver.AuthenticationCache;
+import org.opennms.smoketest.webdriver.BrowserProfiles;
+import org.opennms.smoketest.webdriver.CommandProfile;
+import org.opennms.smoketest.webdriver.LazyWebDriver;
+import org.opennms.smoketest.webdriver.ProfilingWebDriver;
+import org.opennms.smoketest.webdriver.WebDriverFactory;
+import org.opennms.smoketest.webdriver.WebDriverPool;
+import org.opennms.smoketest.webdriver.WebDriverPrefetcher;
 import org.openqa.selenium.Alert;
 import org.openqa.selenium.By;
 import org.openqa.selenium.Dimension;
@@ -97,6 +107,7 @@ import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebDriver.Timeouts;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
@@ -115,12 +126,13 @@ import org.openqa.selenium.support.ui.Select;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thoughtworks.selenium.SeleniumException;
 
 public class OpenNMSSeleniumTestCase {
@@ -137,7 +149,8 @@ public class OpenNMSSeleniumTestCase {
     }
 
     static {
-        final String logLevel = System.getProperty("org.opennms.smoketest.logLevel", "DEBUG");
+        // helper steps go to the journal, which is written out when a test fails; set this to DEBUG to log everything as it happens
+        final String logLevel = System.getProperty("org.opennms.smoketest.logLevel", "WARN");
 
         /* Set up the mock log appender, if it is in the classpath */
         final Properties props = new Properties();
@@ -167,10 +180,36 @@ public class OpenNMSSeleniumTestCase {
         setLevel("org.apache.http", APACHE_LOG_LEVEL);
     }
 
+    /**
+     * The OpenNMS logs to tail, from <code>org.opennms.smoketest.server-activity.logs</code> (comma-separated).
+     */
+    private static List<Path> getServerLogDirectories() {
+        final List<Path> directories = new ArrayList<>();
+        for (final String directory : System.getProperty("org.opennms.smoketest.server-activity.logs", "/opt/opennms/logs,target/opennms-logs").split(",")) {
+            if (!directory.trim().isEmpty()) {
+                directories.add(Paths.get(directory.trim()));
+            }
+        }
+        return directories;
+    }
+
+    private static String getBuildProperty(final String name, final String defaultValue) {
+        final Properties props = new Properties();
+        try (final InputStream is = OpenNMSSeleniumTestCase.class.getResourceAsStream("smoketest.properties")) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (final IOException e) {
+            LOG.debug("Unable to read smoketest.properties.", e);
+        }
+        final String value = props.getProperty(name);
+        return value == null || value.startsWith("${")? defaultValue : value;
+    }
+
     static {
         final File chromeDriver = findChromeDriver();
         if (chromeDriver != null) {
-            LOG.debug("Found chrome driver: " + chromeDriver.getAbsolutePath());
+            LOG.debug("Found chrome driver: {}", chromeDriver.getAbsolutePath());
             System.setProperty("webdriver.chrome.driver", chromeDriver.getAbsolutePath());
         } else {
             LOG.debug("Did not find chrome driver.");
@@ -184,18 +223,91 @@ public class OpenNMSSeleniumTestCase {
     public static final String OPENNMS_EVENT_HOST = System.getProperty("org.opennms.smoketest.event-host", OPENNMS_WEB_HOST);
     public static final int    OPENNMS_EVENT_PORT = Integer.getInteger("org.opennms.smoketest.event-port", 5817);
 
+    public static final String OPENNMS_VERSION    = System.getProperty("org.opennms.smoketest.opennms-version", getBuildProperty("opennms.version", "unknown"));
+
     public static final String BASIC_AUTH_USERNAME = "admin";
     public static final String BASIC_AUTH_PASSWORD = "admin";
 
     public static final String BASE_URL           = "http://" + OPENNMS_WEB_HOST + ":" + OPENNMS_WEB_PORT + "/";
-    public static final String REQUISITION_NAME   = "SeleniumTestGroup";
-    public static final String USER_NAME          = "SmokeTestUser";
-    public static final String GROUP_NAME         = "SmokeTestGroup";
+    // fixture names are suffixed with the worker ID, if there is one, so parallel forks don't share them
+    private static final String REQUISITION_BASE_NAME = "SeleniumTestGroup";
+    private static final String USER_BASE_NAME        = "SmokeTestUser";
+    private static final String GROUP_BASE_NAME       = "SmokeTestGroup";
+    public static final String REQUISITION_NAME   = WorkerFixtures.name(REQUISITION_BASE_NAME);
+    public static final String USER_NAME          = WorkerFixtures.name(USER_BASE_NAME);
+    public static final String GROUP_NAME         = WorkerFixtures.name(GROUP_BASE_NAME);
 
     protected static final boolean usePhantomJS = Boolean.getBoolean("org.opennms.smoketest.webdriver.use-phantomjs") || Boolean.getBoolean("smoketest.usePhantomJS");
     protected static final boolean useChrome    = Boolean.getBoolean("org.opennms.smoketest.webdriver.use-chrome");
+    protected static final int     driverPoolSize = Integer.getInteger("org.opennms.smoketest.webdriver.pool-size", 0);
+    protected static final boolean profileDriver = Boolean.getBoolean("org.opennms.smoketest.webdriver.profile");
+    protected static final boolean useWarmProfile = Boolean.getBoolean("org.opennms.smoketest.webdriver.warm-profile");
+    protected static final boolean lazyDriver = Boolean.valueOf(System.getProperty("org.opennms.smoketest.webdriver.lazy", "true"));
+    protected static final int     prefetchDepth = Integer.getInteger("org.opennms.smoketest.webdriver.prefetch", 0);
+    protected static final long    prefetchMaxMemory = Long.getLong("org.opennms.smoketest.webdriver.prefetch.max-memory", 4096) * 1024 * 1024;
+    protected static final boolean useFormLogin = "form".equalsIgnoreCase(System.getProperty("org.opennms.smoketest.login-mode", "cookie"));
+    protected static final boolean capturePageTimings = Boolean.getBoolean("org.opennms.smoketest.page-timings");
+    protected static final Baselines.Mode baselineMode = Baselines.Mode.fromProperty();
+    protected static final boolean updateBaselines = Boolean.getBoolean("org.opennms.smoketest.baseline.update");
+    protected static final int     journalDumpSize = Integer.getInteger("org.opennms.smoketest.journal.dump-size", 500);
+    protected static final boolean monitorServerActivity = Boolean.getBoolean("org.opennms.smoketest.server-activity");
+
+    private static final SharedHttpClient s_httpClient = new SharedHttpClient(BASIC_AUTH_USERNAME, BASIC_AUTH_PASSWORD,
+            Integer.getInteger("org.opennms.smoketest.http.max-per-route", 20),
+            Integer.getInteger("org.opennms.smoketest.http.max-total", 50));
+    private static final AsyncRestClient s_asyncHttpClient = new AsyncRestClient(s_httpClient, Integer.getInteger("org.opennms.smoketest.http.max-per-route", 20));
+    // cleanup tasks wait on REST calls of their own (ie deleteExistingRequisition), so they can't run on the REST executor
+    private static final ListeningExecutorService s_cleanupExecutor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("fixture-cleanup-%d")
+            .setDaemon(true)
+            .build()));
+    private static final AuthenticationCache s_authenticationCache = new AuthenticationCache(BASE_URL, BASIC_AUTH_USERNAME, BASIC_AUTH_PASSWORD);
+    private static final PageTimings s_pageTimings = new PageTimings(OPENNMS_VERSION);
+    private static final BrowserProfiles s_browserProfiles = new BrowserProfiles(Paths.get("target", "browser-profiles"));
+    // the pages whose assets go in the warm profile; between them, they load nearly everything the UI uses
+    private static final String[] WARM_PAGES = new String[] {
+        "opennms/index.jsp",
+        "opennms/admin/index.jsp",
+        "opennms/admin/ng-requisitions/index.jsp",
+        "opennms/element/index.jsp",
+        "opennms/element/nodeList.htm",
+        "opennms/event/index",
+        "opennms/alarm/index.htm",
+        "opennms/notification/index.jsp",
+        "opennms/outage/index.jsp",
+        "opennms/report/index.jsp",
+        "opennms/support/index.htm"
+    };
+    private static final Baselines s_baselines = baselineMode != Baselines.Mode.OFF || updateBaselines? new Baselines(OPENNMS_VERSION) : null;
+    // the first test in each worker cleans up after crashed workers
+    private static final AtomicBoolean s_sweepPending = new AtomicBoolean(true);
+    // what tests have touched; kept across tests so a failed teardown is retried by the next one
+    private static final FixtureTracker s_fixtures = new FixtureTracker();
+    private static final ServerActivityMonitor s_serverActivity = monitorServerActivity? new ServerActivityMonitor(getServerLogDirectories(), Paths.get("target", "server-activity")).start() : null;
+
+    static {
+        if (s_baselines != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread("baseline-writer") {
+                @Override public void run() {
+                    if (baselineMode != Baselines.Mode.OFF) {
+                        Baselines.writeReport(s_baselines.compareAll(), Paths.get("target", "baseline-report.txt"));
+                    }
+                    if (updateBaselines) {
+                        s_baselines.addAll();
+                        s_baselines.save();
+                    }
+                }
+            });
+        }
+    }
 
     protected WebDriver m_driver = null;
+    private boolean m_driverFailed = false;
+    private boolean m_formLogin = false;
+    private boolean m_prefetched = false;
+    private final List<PageTiming> m_testPageTimings = new ArrayList<>();
+    private long m_testStart;
+    private DomSnapshotCache m_domSnapshots = null;
     protected WebDriverWait wait = null;
     protected WebDriverWait requisitionWait = null;
 
@@ -203,47 +315,65 @@ public class OpenNMSSeleniumTestCase {
     public TestWatcher m_watcher = new TestWatcher() {
         @Override
         protected void starting(final Description description) {
-            m_driver = getDriver();
-            LOG.debug("Using driver: {}", m_driver);
-            setImplicitWait();
-            m_driver.manage().window().setPosition(new Point(0,0));
-            m_driver.manage().window().setSize(new Dimension(2048, 10000));
-            wait = new WebDriverWait(m_driver, TimeUnit.SECONDS.convert(LOAD_TIMEOUT, TimeUnit.MILLISECONDS));
-            requisitionWait = new WebDriverWait(m_driver, TimeUnit.SECONDS.convert(REQ_TIMEOUT, TimeUnit.MILLISECONDS));
-
-            m_driver.get(BASE_URL + "opennms/login.jsp");
-
-            // Wait until the login form is complete
-            wait.until(ExpectedConditions.visibilityOfElementLocated(By.name("j_username")));
-            wait.until(ExpectedConditions.visibilityOfElementLocated(By.name("j_password")));
-            wait.until(ExpectedConditions.elementToBeClickable(By.name("Login")));
-
-            enterText(By.name("j_username"), BASIC_AUTH_USERNAME);
-            enterText(By.name("j_password"), BASIC_AUTH_PASSWORD);
-            findElementByName("Login").click();
-
-            wait.until(ExpectedConditions.visibilityOfElementLocated(By.xpath("//div[@id='content']")));
-            try {
-                // Disable implicitlyWait
-                setImplicitWait(0, TimeUnit.MILLISECONDS);
-                try {
-                    // Make sure that the 'login-attempt-failed' element is not present
-                    findElementById("login-attempt-failed");
-                    fail("Login failed: " + findElementById("login-attempt-failed-reason").getText());
-                } catch (NoSuchElementException e) {
-                    // This is expected
+            m_testStart = System.currentTimeMillis();
+            Journal.record(Journal.Type.TEST_START, description.getClassName() + "." + description.getMethodName(), -1, null);
+            if (s_serverActivity != null) {
+                s_serverActivity.testStarted(description.getClassName() + "." + description.getMethodName());
+            }
+            m_driverFailed = false;
+            m_formLogin = useFormLogin();
+            m_prefetched = false;
+            if (usePrefetcher()) {
+                // start the first drivers now, so they're ready by the time the test wants one
+                getDriverPrefetcher();
+            }
+            final String testName = description.getClassName() + "." + description.getMethodName();
+            final WebDriverFactory factory = new WebDriverFactory() {
+                @Override public WebDriver createDriver() {
+                    final WebDriver driver = newDriver();
+                    return profileDriver? ProfilingWebDriver.wrap(driver, new CommandProfile(testName)) : driver;
                 }
-            } finally {
-                setImplicitWait();
+            };
+            if (lazyDriver) {
+                // REST-only tests never touch the driver, so don't start a browser until something does
+                m_driver = LazyWebDriver.create(factory, new LazyWebDriver.Initializer() {
+                    @Override public void initialize(final WebDriver driver) {
+                        initializeDriver();
+                    }
+                }, new LazyWebDriver.Disposer() {
+                    @Override public void dispose(final WebDriver driver) {
+                        // it never got as far as the test, so don't trust it with another one
+                        disposeDriver(driver, true, testName);
+                    }
+                });
+            } else {
+                m_driver = factory.createDriver();
+            }
+            wait = new BackoffWait(m_driver, LOAD_TIMEOUT);
+            requisitionWait = new BackoffWait(m_driver, REQ_TIMEOUT);
+            if (!lazyDriver) {
+                initializeDriver();
             }
 
             // make sure everything's in a good state if possible
+            if (s_sweepPending.compareAndSet(true, false)) {
+                sweepAbandonedWorkers();
+            }
             cleanUp();
         }
 
         @Override
         protected void failed(final Throwable e, final Description description) {
             final String testName = description.getMethodName();
+            m_driverFailed = true;
+            Journal.note("failed", "{}", e);
+            final Path journal = Paths.get("target", "journal", description.getClassName() + "." + testName + ".txt");
+            Journal.write(journal, journalDumpSize);
+            LOG.warn("Test {} failed, the last {} steps are in {}", testName, journalDumpSize, journal);
+            if (LazyWebDriver.getStarted(m_driver) == null) {
+                LOG.debug("Test {} never started a browser; no screenshot or DOM to save.", testName);
+                return;
+            }
             LOG.debug("Test {} failed... attempting to take screenshot.", testName);
             if (m_driver != null && m_driver instanceof TakesScreenshot) {
                 final TakesScreenshot shot = (TakesScreenshot)m_driver;
@@ -284,57 +414,270 @@ public class OpenNMSSeleniumTestCase {
             LogEntries logs = m_driver.manage().logs().get("browser");
             for (final LogEntry entry : logs.getAll()) {
                 final int level = entry.getLevel().intValue();
-                final String msg = "BROWSER: " + entry.getMessage();
                 if (level > Level.SEVERE.intValue()) {
-                    LOG.error(msg);
+                    LOG.error("BROWSER: {}", entry.getMessage());
                 } else if (level >= Level.WARNING.intValue()) {
-                    LOG.warn(msg);
+                    LOG.warn("BROWSER: {}", entry.getMessage());
                 } else if (level >= Level.INFO.intValue()) {
-                    LOG.info(msg);
+                    LOG.info("BROWSER: {}", entry.getMessage());
                 } else if (level >= Level.FINE.intValue()) {
-                    LOG.debug(msg);
+                    LOG.debug("BROWSER: {}", entry.getMessage());
                 } else {
-                    LOG.trace(msg);
+                    LOG.trace("BROWSER: {}", entry.getMessage());
                 }
             }
         }
 
         @Override
         protected void finished(final Description description) {
+            final Baselines.Comparison baseline = checkBaseline(description, System.currentTimeMillis() - m_testStart);
+            Journal.record(Journal.Type.TEST_END, description.getClassName() + "." + description.getMethodName(), System.currentTimeMillis() - m_testStart, null);
             cleanUp();
 
             LOG.debug("Shutting down Selenium.");
-            if (m_driver != null) {
+            final WebDriver started = LazyWebDriver.getStarted(m_driver);
+            final CommandProfile profile = ProfilingWebDriver.getProfile(started);
+            if (profile != null) {
+                LOG.debug("WebDriver commands: {}", profile);
+                profile.write(Paths.get("target", "profiles", description.getClassName() + "." + description.getMethodName() + ".txt"));
+            }
+            if (!m_testPageTimings.isEmpty()) {
+                s_pageTimings.storeTest(description.getClassName() + "." + description.getMethodName(), useWarmProfile, m_testPageTimings);
+                m_testPageTimings.clear();
+            }
+            if (m_domSnapshots != null) {
+                LOG.debug("DOM snapshots: {}", m_domSnapshots);
+                m_domSnapshots = null;
+            }
+            if (started != null) {
+                // a cached session is shared with other tests, so only log out of our own
+                if (m_formLogin) {
+                    try {
+                        started.get(BASE_URL + "opennms/j_spring_security_logout");
+                    } catch (final SeleniumException e) {
+                        // don't worry about it, this is just for logging out
+                    }
+                }
+                // a failed test may have left the browser in a state we can't reliably reset
+                disposeDriver(started, m_driverFailed, description.getMethodName());
+            }
+            m_driver = null;
+
+            if (driverPoolSize == 0 && started != null) {
                 try {
-                    m_driver.get(BASE_URL + "opennms/j_spring_security_logout");
-                } catch (final SeleniumException e) {
-                    // don't worry about it, this is just for logging out
+                    Thread.sleep(3000);
+                } catch (final InterruptedException e) {
                 }
+            }
+
+            if (s_serverActivity != null) {
+                s_serverActivity.testFinished();
+            }
+
+            if (baseline != null && baseline.getVerdict() == Baselines.Verdict.REGRESS && baselineMode == Baselines.Mode.FAIL) {
+                throw new AssertionError("Performance regression: " + baseline);
+            }
+        }
+
+        /**
+         * Hand a started driver back to the pool (evicting it if it's broken),
+         * or quit it and release its warm profile clone.
+         */
+        private void disposeDriver(final WebDriver started, final boolean broken, final String testName) {
+            if (driverPoolSize > 0) {
+                if (broken) {
+                    getDriverPool().evict(ProfilingWebDriver.unwrap(started));
+                } else {
+                    getDriverPool().release(ProfilingWebDriver.unwrap(started));
+                }
+            } else {
                 try {
-                    m_driver.quit();
+                    started.quit();
                 } catch (final Exception e) {
-                    LOG.error("Failed while shutting down WebDriver for test {}.", description.getMethodName(), e);
+                    LOG.error("Failed while shutting down WebDriver for test {}.", testName, e);
                 }
-                m_driver = null;
+                BrowserProfiles.release(ProfilingWebDriver.unwrap(started));
             }
+        }
 
-            try {
-                Thread.sleep(3000);
-            } catch (final InterruptedException e) {
+        /**
+         * Record how long the test took, and compare it to the baseline for this OpenNMS version.
+         */
+        private Baselines.Comparison checkBaseline(final Description description, final long elapsed) {
+            final String metric = StepTimings.getName("test", description.getClassName() + "." + description.getMethodName());
+            StepTimings.record(metric, elapsed);
+            if (s_baselines == null || baselineMode == Baselines.Mode.OFF || m_driverFailed) {
+                return null;
             }
+            final Baselines.Comparison comparison = s_baselines.compare(metric, new long[] { elapsed });
+            if (comparison.getVerdict() == Baselines.Verdict.REGRESS) {
+                LOG.warn("{}", comparison);
+            } else {
+                LOG.debug("{}", comparison);
+            }
+            return comparison;
         }
 
+        /**
+         * Delete the fixtures of any other worker that crashed before cleaning up.
+         */
+        private void sweepAbandonedWorkers() {
+            WorkerFixtures.sweep(new WorkerFixtures.Sweeper() {
+                @Override public void sweep(final String workerId) throws Exception {
+                    deleteExistingRequisition(WorkerFixtures.name(REQUISITION_BASE_NAME, workerId));
+                    doRequest(new HttpDelete(BASE_URL + "opennms/rest/users/" + WorkerFixtures.name(USER_BASE_NAME, workerId)));
+                    doRequest(new HttpDelete(BASE_URL + "opennms/rest/groups/" + WorkerFixtures.name(GROUP_BASE_NAME, workerId)));
+                }
+            });
+        }
+
+        /**
+         * Undo whatever the test changed.  Fixtures the REST helpers touched are
+         * deleted outright; the default requisition, user, and group are only
+         * deleted if a quick check finds them, since a test may have created them
+         * through the UI.  Everything is cleaned up in parallel.
+         */
         protected void cleanUp() {
+            final Map<FixtureTracker.Kind,Set<String>> dirty = s_fixtures.drain();
+            final Set<String> requisitions = dirty.get(FixtureTracker.Kind.REQUISITION);
+            final Set<String> foreignSources = dirty.get(FixtureTracker.Kind.FOREIGN_SOURCE);
+            final Set<String> users = dirty.get(FixtureTracker.Kind.USER);
+            final Set<String> groups = dirty.get(FixtureTracker.Kind.GROUP);
+            LOG.debug("cleanUp: requisitions={}, foreignSources={}, users={}, groups={}", requisitions, foreignSources, users, groups);
+
+            // a requisition and the foreign source of the same name are cleaned up together, so they don't race;
+            // this is only safe because deleteExistingRequisition (and the createRequisition it may call) never
+            // touches or waits on any source but its own
+            final Set<String> sources = new TreeSet<>(requisitions);
+            sources.addAll(foreignSources);
+            sources.add(REQUISITION_NAME);
+
+            final Map<FixtureTracker.Kind,Set<String>> failed = new EnumMap<>(FixtureTracker.Kind.class);
+            final List<ListenableFuture<Void>> futures = new ArrayList<>();
+            for (final String foreignSource : sources) {
+                futures.add(cleanUpAsync(FixtureTracker.Kind.REQUISITION, foreignSource, failed, new Callable<Void>() {
+                    @Override public Void call() throws Exception {
+                        if (requisitions.contains(foreignSource) || requisitionExists(foreignSource) || getNodesInDatabase(foreignSource) > 0) {
+                            deleteExistingRequisition(foreignSource);
+                        }
+                        if (foreignSources.contains(foreignSource)) {
+                            // deleting the requisition usually takes the foreign source with it, so a 404 is fine
+                            doRequest(new HttpDelete(BASE_URL + "opennms/rest/foreignSources/" + URLEncoder.encode(foreignSource, "UTF-8")));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            futures.addAll(cleanUpAsync(FixtureTracker.Kind.USER, "opennms/rest/users/", users, USER_NAME, failed));
+            futures.addAll(cleanUpAsync(FixtureTracker.Kind.GROUP, "opennms/rest/groups/", groups, GROUP_NAME, failed));
+
             try {
-                deleteTestRequisition();
-                deleteTestUser();
-                deleteTestGroup();
+                waitForAll(futures);
             } catch (final Exception e) {
                 LOG.error("Cleaning up failed. Future tests will be in an unhandled state.", e);
             }
+
+            // deleting a requisition re-imports it empty, which marks it again
+            s_fixtures.unmark(FixtureTracker.Kind.REQUISITION, sources);
+            s_fixtures.unmark(FixtureTracker.Kind.FOREIGN_SOURCE, sources);
+            synchronized (failed) {
+                for (final Map.Entry<FixtureTracker.Kind,Set<String>> entry : failed.entrySet()) {
+                    LOG.error("Cleaning up failed for {} {}. Future tests will be in an unhandled state.", entry.getKey(), entry.getValue());
+                    for (final String name : entry.getValue()) {
+                        s_fixtures.mark(entry.getKey(), name);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Delete the given users or groups, plus the default one if it exists.
+         */
+        private List<ListenableFuture<Void>> cleanUpAsync(final FixtureTracker.Kind kind, final String resource, final Set<String> dirty, final String defaultName, final Map<FixtureTracker.Kind,Set<String>> failed) {
+            final Set<String> names = new TreeSet<>(dirty);
+            names.add(defaultName);
+            final List<ListenableFuture<Void>> futures = new ArrayList<>();
+            for (final String name : names) {
+                futures.add(cleanUpAsync(kind, name, failed, new Callable<Void>() {
+                    @Override public Void call() throws Exception {
+                        final String url = BASE_URL + resource + URLEncoder.encode(name, "UTF-8");
+                        if (dirty.contains(name) || doRequest(new HttpGet(url)) == 200) {
+                            doRequest(new HttpDelete(url));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            return futures;
+        }
+
+        /**
+         * Run a cleanup task, noting the fixture as failed instead of failing
+         * the batch, so one bad fixture doesn't stop the rest being cleaned up.
+         */
+        private ListenableFuture<Void> cleanUpAsync(final FixtureTracker.Kind kind, final String name, final Map<FixtureTracker.Kind,Set<String>> failed, final Callable<Void> task) {
+            return s_cleanupExecutor.submit(new Callable<Void>() {
+                @Override public Void call() {
+                    try {
+                        task.call();
+                    } catch (final Exception e) {
+                        LOG.warn("cleanUp: failed to clean up {} {}", kind, name, e);
+                        synchronized (failed) {
+                            if (!failed.containsKey(kind)) {
+                                failed.put(kind, new TreeSet<String>());
+                            }
+                            failed.get(kind).add(name);
+                        }
+                    }
+                    return null;
+                }
+            });
         }
     };
 
+    /**
+     * The HTTP client shared by all REST calls, authenticated as {@link #BASIC_AUTH_USERNAME}.
+     */
+    public static SharedHttpClient getHttpClient() {
+        return s_httpClient;
+    }
+
+    /**
+     * Whether to log in by filling in the login form, rather than reusing a
+     * cached session.  Override this for tests that exercise the login page.
+     */
+    protected boolean useFormLogin() {
+        return useFormLogin;
+    }
+
+    protected void formLogin() {
+        m_driver.get(BASE_URL + "opennms/login.jsp");
+
+        // Wait until the login form is complete
+        wait.until(ExpectedConditions.visibilityOfElementLocated(By.name("j_username")));
+        wait.until(ExpectedConditions.visibilityOfElementLocated(By.name("j_password")));
+        wait.until(ExpectedConditions.elementToBeClickable(By.name("Login")));
+
+        enterText(By.name("j_username"), BASIC_AUTH_USERNAME);
+        enterText(By.name("j_password"), BASIC_AUTH_PASSWORD);
+        findElementByName("Login").click();
+
+        wait.until(ExpectedConditions.visibilityOfElementLocated(By.xpath("//div[@id='content']")));
+        try {
+            // Disable implicitlyWait
+            setImplicitWait(0, TimeUnit.MILLISECONDS);
+            try {
+                // Make sure that the 'login-attempt-failed' element is not present
+                findElementById("login-attempt-failed");
+                fail("Login failed: " + findElementById("login-attempt-failed-reason").getText());
+            } catch (NoSuchElementException e) {
+                // This is expected
+            }
+        } finally {
+            setImplicitWait();
+        }
+    }
+
     protected JavascriptExecutor getExecutor() throws InstantiationException, IllegalAccessException, ClassNotFoundException {
         return (JavascriptExecutor)getDriver();
     }
@@ -343,6 +686,133 @@ public class OpenNMSSeleniumTestCase {
         if (m_driver != null) {
             return m_driver;
         }
+        return newDriver();
+    }
+
+    private WebDriver newDriver() {
+        if (driverPoolSize > 0) {
+            return getDriverPool().lease();
+        }
+        if (usePrefetcher()) {
+            final WebDriver driver = getDriverPrefetcher().take();
+            if (driver != null) {
+                m_prefetched = true;
+                return driver;
+            }
+        }
+        return createDriver();
+    }
+
+    /**
+     * Prefetched drivers are logged in with the cached session, so tests that
+     * log in with the form (and pooled drivers, which are reused) don't use them.
+     */
+    private boolean usePrefetcher() {
+        return prefetchDepth > 0 && driverPoolSize == 0 && !m_formLogin;
+    }
+
+    /**
+     * Get the prefetcher for drivers compatible with this test, keyed the same
+     * way as {@link #getDriverPool()}.  Like the pool, it outlives this test, so
+     * overriding {@link #createDriver()} has no effect on prefetched drivers.
+     */
+    protected WebDriverPrefetcher getDriverPrefetcher() {
+        final DesiredCapabilities custom = getCustomCapabilities();
+        return WebDriverPrefetcher.getPrefetcher(driverKey(custom), prefetchDepth, prefetchMaxMemory, LOAD_TIMEOUT, new CapabilitiesDriverFactory(custom), new SessionPreparer());
+    }
+
+    /**
+     * Sizes prefetched drivers and logs them in with the cached session.
+     */
+    private static final class SessionPreparer implements WebDriverPrefetcher.Preparer {
+        @Override
+        public boolean prepare(final WebDriver driver) {
+            driver.manage().window().setPosition(new Point(0,0));
+            driver.manage().window().setSize(new Dimension(2048, 10000));
+            return s_authenticationCache.authenticate(driver);
+        }
+    }
+
+    /**
+     * Size the browser window and log in.  With lazy drivers, this happens the
+     * first time the test uses the driver, rather than when the test starts.
+     */
+    private void initializeDriver() {
+        try (final StepTimings.Step step = StepTimings.start("initializeDriver")) {
+            LOG.debug("Using driver: {}", m_driver);
+            setImplicitWait();
+            if (m_prefetched) {
+                // sized and logged in in the background already
+                return;
+            }
+            m_driver.manage().window().setPosition(new Point(0,0));
+            m_driver.manage().window().setSize(new Dimension(2048, 10000));
+
+            if (m_formLogin || !s_authenticationCache.authenticate(m_driver)) {
+                formLogin();
+                if (!m_formLogin) {
+                    // we couldn't reuse a session, so keep the one we just created
+                    s_authenticationCache.setSessionCookie(m_driver.manage().getCookieNamed(AuthenticationCache.SESSION_COOKIE));
+                }
+            } else {
+                wait.until(ExpectedConditions.visibilityOfElementLocated(By.xpath("//div[@id='content']")));
+            }
+        }
+    }
+
+    /**
+     * Get the pool of drivers compatible with this test.  Drivers are only shared
+     * between tests that end up with the same customized capabilities.
+     *
+     * The pool outlives this test and starts replacement drivers for later ones,
+     * so its drivers are created from the capabilities alone; overriding
+     * {@link #createDriver()} has no effect on pooled drivers.
+     */
+    protected WebDriverPool getDriverPool() {
+        final DesiredCapabilities custom = getCustomCapabilities();
+        return WebDriverPool.getPool(driverKey(custom), driverPoolSize, LOAD_TIMEOUT, new CapabilitiesDriverFactory(custom));
+    }
+
+    /**
+     * Which kind of browser the given capabilities start; drivers are only
+     * shared between tests with the same key.
+     */
+    private static String driverKey(final DesiredCapabilities custom) {
+        final String driverClass = System.getProperty("org.opennms.smoketest.webdriver.class", System.getProperty("webdriver.class"));
+        return (driverClass != null? driverClass : usePhantomJS? "phantomjs" : useChrome? "chrome" : "firefox") + custom.asMap();
+    }
+
+    /**
+     * Creates drivers from a set of customized capabilities, without holding on
+     * to the test that asked for them.
+     */
+    private static final class CapabilitiesDriverFactory implements WebDriverFactory {
+        private final DesiredCapabilities m_custom;
+
+        private CapabilitiesDriverFactory(final DesiredCapabilities custom) {
+            m_custom = custom;
+        }
+
+        @Override
+        public WebDriver createDriver() {
+            return OpenNMSSeleniumTestCase.createDriver(m_custom);
+        }
+    }
+
+    private DesiredCapabilities getCustomCapabilities() {
+        final DesiredCapabilities custom = new DesiredCapabilities();
+        customizeCapabilities(custom);
+        return custom;
+    }
+
+    protected WebDriver createDriver() {
+        return createDriver(getCustomCapabilities());
+    }
+
+    /**
+     * @param custom the capabilities from {@link #customizeCapabilities(DesiredCapabilities)}
+     */
+    private static WebDriver createDriver(final DesiredCapabilities custom) {
         WebDriver driver = null;
         final String driverClass = System.getProperty("org.opennms.smoketest.webdriver.class", System.getProperty("webdriver.class"));
         if (driverClass != null) {
@@ -359,38 +829,119 @@ public class OpenNMSSeleniumTestCase {
                 final File phantomJS = findPhantomJS();
                 if (phantomJS != null) {
                     final DesiredCapabilities caps = DesiredCapabilities.phantomjs();
-                    customizeCapabilities(caps);
+                    caps.merge(custom);
                     caps.setCapability(PhantomJSDriverService.PHANTOMJS_EXECUTABLE_PATH_PROPERTY, phantomJS.toString());
                     driver = new PhantomJSDriver(caps);
                 }
             } else if (useChrome) {
                 final File chrome = findChrome();
                 if (chrome != null) {
-                    final ChromeOptions options = new ChromeOptions();
-                    options.setBinary(chrome);
-                    final DesiredCapabilities caps = DesiredCapabilities.chrome();
-                    customizeCapabilities(caps);
-                    caps.setCapability(ChromeOptions.CAPABILITY, options);
-                    driver = new ChromeDriver(caps);
+                    final Path profile = cloneWarmProfile(BrowserProfiles.Browser.CHROME, new BrowserProfiles.Launcher() {
+                        @Override public WebDriver launch(final Path profile) {
+                            return createChromeDriver(chrome, profile, custom);
+                        }
+                    });
+                    driver = createChromeDriver(chrome, profile, custom);
+                    if (profile != null) {
+                        BrowserProfiles.register(driver, profile);
+                    }
                 }
             }
             if (driver == null) { // fallback to firefox
-                FirefoxProfile fp = new FirefoxProfile();
-                fp.setEnableNativeEvents(false);
-                fp.setPreference("app.update.auto", false);
-                fp.setPreference("app.update.enabled", false);
-                fp.setPreference("app.update.silent", false);
-                fp.setPreference("browser.startup.homepage", "about:blank");
-                fp.setPreference("startup.homepage_welcome_url", "about:blank");
-                fp.setPreference("startup.homepage_welcome_url.additional", "about:blank");
-                final DesiredCapabilities caps = DesiredCapabilities.firefox();
-                customizeCapabilities(caps);
-                driver = new FirefoxDriver(new FirefoxBinary(), fp, caps);
+                final Path cache = cloneWarmProfile(BrowserProfiles.Browser.FIREFOX, new BrowserProfiles.Launcher() {
+                    @Override public WebDriver launch(final Path cache) {
+                        return createFirefoxDriver(cache, custom);
+                    }
+                });
+                driver = createFirefoxDriver(cache, custom);
+                if (cache != null) {
+                    BrowserProfiles.register(driver, cache);
+                }
             }
         }
         return driver;
     }
 
+    /**
+     * @param cache the directory to keep the HTTP cache in, or <code>null</code> for one inside a new, empty profile
+     */
+    private static WebDriver createFirefoxDriver(final Path cache, final DesiredCapabilities custom) {
+        final FirefoxProfile fp = new FirefoxProfile();
+        fp.setEnableNativeEvents(false);
+        fp.setPreference("app.update.auto", false);
+        fp.setPreference("app.update.enabled", false);
+        fp.setPreference("app.update.silent", false);
+        fp.setPreference("browser.startup.homepage", "about:blank");
+        fp.setPreference("startup.homepage_welcome_url", "about:blank");
+        fp.setPreference("startup.homepage_welcome_url.additional", "about:blank");
+        // nothing but OpenNMS should be using the network or the CPU
+        fp.setPreference("browser.safebrowsing.enabled", false);
+        fp.setPreference("browser.safebrowsing.malware.enabled", false);
+        fp.setPreference("browser.search.update", false);
+        fp.setPreference("browser.shell.checkDefaultBrowser", false);
+        fp.setPreference("datareporting.healthreport.uploadEnabled", false);
+        fp.setPreference("datareporting.policy.dataSubmissionEnabled", false);
+        fp.setPreference("extensions.update.enabled", false);
+        fp.setPreference("toolkit.telemetry.enabled", false);
+        fp.setPreference("toolkit.telemetry.unified", false);
+        if (cache != null) {
+            // selenium copies the profile for every driver, so keep the cache (the big part) outside of it
+            fp.setPreference("browser.cache.disk.parent_directory", cache.toAbsolutePath().toString());
+            fp.setPreference("browser.cache.disk.smart_size.enabled", false);
+            fp.setPreference("browser.cache.disk.capacity", 262144);
+        }
+        final DesiredCapabilities caps = DesiredCapabilities.firefox();
+        caps.merge(custom);
+        return new FirefoxDriver(new FirefoxBinary(), fp, caps);
+    }
+
+    /**
+     * @param profile the user data directory to use, or <code>null</code> for a new, empty one
+     */
+    private static WebDriver createChromeDriver(final File chrome, final Path profile, final DesiredCapabilities custom) {
+        final ChromeOptions options = new ChromeOptions();
+        options.setBinary(chrome);
+        options.addArguments("--disable-background-networking", "--disable-component-update", "--disable-default-apps", "--disable-sync", "--metrics-recording-only", "--no-default-browser-check", "--no-first-run");
+        if (profile != null) {
+            options.addArguments("--user-data-dir=" + profile.toAbsolutePath());
+        }
+        final DesiredCapabilities caps = DesiredCapabilities.chrome();
+        caps.merge(custom);
+        caps.setCapability(ChromeOptions.CAPABILITY, options);
+        return new ChromeDriver(caps);
+    }
+
+    /**
+     * A copy of the warm profile for the given browser, warming it first if
+     * nothing has asked for it yet.  Returns <code>null</code> if warm profiles
+     * are turned off or warming failed.
+     */
+    private static Path cloneWarmProfile(final BrowserProfiles.Browser browser, final BrowserProfiles.Launcher launcher) {
+        if (!useWarmProfile) {
+            return null;
+        }
+        final Path template = s_browserProfiles.getTemplate(browser, launcher, new BrowserProfiles.Warmer() {
+            @Override public void warm(final WebDriver driver) {
+                if (!s_authenticationCache.authenticate(driver)) {
+                    throw new OpenNMSTestException("Unable to log in to warm the " + browser + " profile.");
+                }
+                for (final String page : WARM_PAGES) {
+                    LOG.debug("Warming {} profile: {}", browser, page);
+                    driver.get(BASE_URL + page);
+                }
+            }
+        });
+        if (template == null) {
+            return null;
+        }
+        try {
+            return s_browserProfiles.clone(template);
+        } catch (final IOException e) {
+            LOG.warn("Failed to copy the warm {} profile; starting with an empty cache.", browser, e);
+            return null;
+        }
+    }
+
     // Hook to customize the behaviour of the Webdriver, as tests might need this functionality
     // and it is not possible to change the capabilities AFTER the webdriver was created.
     protected void customizeCapabilities(DesiredCapabilities caps) {
@@ -496,7 +1047,11 @@ public class OpenNMSSeleniumTestCase {
     }
 
     protected WebDriverWait waitFor(final long seconds) {
-        return new WebDriverWait(m_driver, seconds);
+        return new BackoffWait(m_driver, TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    protected BackoffWait waitFor(final long seconds, final Backoff backoff) {
+        return new BackoffWait(m_driver, TimeUnit.SECONDS.toMillis(seconds), backoff);
     }
 
     protected void waitForClose(final By selector) {
@@ -507,7 +1062,6 @@ public class OpenNMSSeleniumTestCase {
                 @Override
                 public Boolean apply(final WebDriver input) {
                     try {
-                        Thread.sleep(200);
                         final List<WebElement> elements = input.findElements(selector);
                         if (elements.size() == 0) {
                             return true;
@@ -555,21 +1109,29 @@ public class OpenNMSSeleniumTestCase {
     }
 
     public void focusElement(final By by) {
-        try {
-            Thread.sleep(200);
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        waitForElement(by).click();
+        waitUntil(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                final WebElement el = getDriver().findElement(by);
+                if (el.isDisplayed() && el.isEnabled()) {
+                    el.click();
+                    return true;
+                }
+                return false;
+            }
+        });
     }
 
     public void clearElement(final By by) {
-        try {
-            Thread.sleep(200);
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        waitForElement(by).clear();
+        waitUntil(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                final WebElement el = getDriver().findElement(by);
+                if (el.isDisplayed() && el.isEnabled()) {
+                    el.clear();
+                    return true;
+                }
+                return false;
+            }
+        });
     }
 
     protected void assertElementDoesNotExist(final By by) {
@@ -672,93 +1234,158 @@ public class OpenNMSSeleniumTestCase {
     }
 
     protected void clickMenuItem(final String menuItemText, final String submenuItemText, final String submenuItemHref) {
-        LOG.debug("clickMenuItem: itemText={}, submenuItemText={}, submenuHref={}", menuItemText, submenuItemText, submenuItemHref);
+        try (final StepTimings.Step step = StepTimings.start("clickMenuItem", submenuItemText == null? menuItemText : menuItemText + "/" + submenuItemText)) {
+            LOG.debug("clickMenuItem: itemText={}, submenuItemText={}, submenuHref={}", menuItemText, submenuItemText, submenuItemHref);
 
-        final Actions action = new Actions(m_driver);
+            final Actions action = new Actions(m_driver);
 
-        final WebElement menuElement;
-        if (menuItemText.startsWith("name=")) {
-            final String menuItemName = menuItemText.replaceFirst("name=", "");
-            menuElement = findElementByName(menuItemName);
-        } else {
-            menuElement = findElementByXpath("//a[contains(text(), '" + menuItemText + "')]");
-        }
-        action.moveToElement(menuElement, 2, 2).perform();
+            final WebElement menuElement;
+            if (menuItemText.startsWith("name=")) {
+                final String menuItemName = menuItemText.replaceFirst("name=", "");
+                menuElement = findElementByName(menuItemName);
+            } else {
+                menuElement = findElementByXpath("//a[contains(text(), '" + menuItemText + "')]");
+            }
+            action.moveToElement(menuElement, 2, 2).perform();
+
+            final WebElement submenuElement;
+            if (submenuItemText != null) {
+                if (submenuItemHref == null) {
+                    submenuElement = findElementByXpath("//a[contains(text(), '" + submenuItemText + "')]");
+                } else {
+                    submenuElement = findElementByXpath("//a[contains(@href, '" + submenuItemHref + "') and contains(text(), '" + submenuItemText + "')]");
+                }
+            } else {
+                submenuElement = null;
+            }
 
-        final WebElement submenuElement;
-        if (submenuItemText != null) {
-            if (submenuItemHref == null) {
-                submenuElement = findElementByXpath("//a[contains(text(), '" + submenuItemText + "')]");
+            if (submenuElement == null) {
+                // no submenu given, just click the main element
+                // wait until the element is visible, not just present in the DOM
+                wait.until(ExpectedConditions.visibilityOf(menuElement));
+                menuElement.click();
             } else {
-                submenuElement = findElementByXpath("//a[contains(@href, '" + submenuItemHref + "') and contains(text(), '" + submenuItemText + "')]");
+                // we want a submenu item, click it instead
+                // wait until the element is visible, not just present in the DOM
+                wait.until(ExpectedConditions.visibilityOf(submenuElement));
+                submenuElement.click();
             }
-        } else {
-            submenuElement = null;
         }
+    }
 
-        if (submenuElement == null) {
-            // no submenu given, just click the main element
-            // wait until the element is visible, not just present in the DOM
-            wait.until(ExpectedConditions.visibilityOf(menuElement));
-            menuElement.click();
-        } else {
-            // we want a submenu item, click it instead
-            // wait until the element is visible, not just present in the DOM
-            wait.until(ExpectedConditions.visibilityOf(submenuElement));
-            submenuElement.click();
+    /**
+     * Check the given expectations in parallel, each in a fresh authenticated browser session
+     * starting from its own start URL (the front page by default).  A per-page timing report
+     * is written to <code>target/crawl-reports/</code>.
+     */
+    protected ExpectationCrawler.Report crawl(final String name, final Collection<Expectation> expectations) throws ExpectationFailed {
+        final ExpectationCrawler crawler = new ExpectationCrawler(new WebDriverFactory() {
+            @Override public WebDriver createDriver() {
+                return OpenNMSSeleniumTestCase.this.createDriver();
+            }
+        }, s_authenticationCache, BASE_URL + "opennms/");
+        final ExpectationCrawler.Report report = crawler.crawl(expectations, LOAD_TIMEOUT * (expectations.size() + 1), TimeUnit.MILLISECONDS);
+        report.write(Paths.get("target", "crawl-reports", getClass().getName() + "." + name + ".txt"));
+        report.assertPassed();
+        return report;
+    }
+
+    /**
+     * Store the browser's navigation and resource timings for the current page
+     * under <code>target/page-timings/&lt;OpenNMS version&gt;/</code>.  Only
+     * done when <code>org.opennms.smoketest.page-timings</code> is set; otherwise
+     * this does nothing and returns <code>null</code>.
+     */
+    protected PageTiming capturePageTimings(final String page) {
+        if (!capturePageTimings) {
+            return null;
         }
+        final PageTiming timing = s_pageTimings.captureAndStore(m_driver, page);
+        if (timing != null) {
+            m_testPageTimings.add(timing);
+        }
+        return timing;
     }
 
     protected void frontPage() {
-        LOG.debug("navigating to the front page");
-        m_driver.get(BASE_URL + "opennms/");
-        m_driver.findElement(By.id("index-contentleft"));
+        try (final StepTimings.Step step = StepTimings.start("frontPage")) {
+            LOG.debug("navigating to the front page");
+            m_driver.get(BASE_URL + "opennms/");
+            m_driver.findElement(By.id("index-contentleft"));
+        }
+        capturePageTimings("frontPage");
     }
 
     public void adminPage() {
-        LOG.debug("navigating to the admin page");
-        m_driver.get(BASE_URL + "opennms/admin/index.jsp");
+        try (final StepTimings.Step step = StepTimings.start("adminPage")) {
+            LOG.debug("navigating to the admin page");
+            m_driver.get(BASE_URL + "opennms/admin/index.jsp");
+        }
+        capturePageTimings("adminPage");
     }
 
     protected void nodePage() {
-        LOG.debug("navigating to the node page");
-        m_driver.get(BASE_URL + "opennms/element/nodeList.htm");
+        try (final StepTimings.Step step = StepTimings.start("nodePage")) {
+            LOG.debug("navigating to the node page");
+            m_driver.get(BASE_URL + "opennms/element/nodeList.htm");
+        }
+        capturePageTimings("nodePage");
     }
 
     protected void notificationsPage() {
-        LOG.debug("navigating to the notifications page");
-        m_driver.get(BASE_URL + "opennms/notification/index.jsp");
+        try (final StepTimings.Step step = StepTimings.start("notificationsPage")) {
+            LOG.debug("navigating to the notifications page");
+            m_driver.get(BASE_URL + "opennms/notification/index.jsp");
+        }
+        capturePageTimings("notificationsPage");
     }
 
     protected void outagePage() {
-        LOG.debug("navigating to the outage page");
-        m_driver.get(BASE_URL + "opennms/outage/index.jsp");
+        try (final StepTimings.Step step = StepTimings.start("outagePage")) {
+            LOG.debug("navigating to the outage page");
+            m_driver.get(BASE_URL + "opennms/outage/index.jsp");
+        }
+        capturePageTimings("outagePage");
     }
 
     protected void provisioningPage() {
-        LOG.debug("navigating to the provisioning page");
-        m_driver.get(BASE_URL + "opennms/admin/index.jsp");
-        m_driver.findElement(By.linkText("Manage Provisioning Requisitions")).click();
+        try (final StepTimings.Step step = StepTimings.start("provisioningPage")) {
+            LOG.debug("navigating to the provisioning page");
+            m_driver.get(BASE_URL + "opennms/admin/index.jsp");
+            m_driver.findElement(By.linkText("Manage Provisioning Requisitions")).click();
+        }
+        capturePageTimings("provisioningPage");
     }
 
     protected void remotingPage() {
-        LOG.debug("navigating to the remoting page");
-        m_driver.get(BASE_URL + "opennms-remoting/index.html");
+        try (final StepTimings.Step step = StepTimings.start("remotingPage")) {
+            LOG.debug("navigating to the remoting page");
+            m_driver.get(BASE_URL + "opennms-remoting/index.html");
+        }
     }
 
     protected void reportsPage() {
-        LOG.debug("navigating to the reports page");
-        m_driver.get(BASE_URL + "opennms/report/index.jsp");
+        try (final StepTimings.Step step = StepTimings.start("reportsPage")) {
+            LOG.debug("navigating to the reports page");
+            m_driver.get(BASE_URL + "opennms/report/index.jsp");
+        }
+        capturePageTimings("reportsPage");
     }
 
     protected void searchPage() {
-        LOG.debug("navigating to the search page");
-        m_driver.get(BASE_URL + "opennms/element/index.jsp");
+        try (final StepTimings.Step step = StepTimings.start("searchPage")) {
+            LOG.debug("navigating to the search page");
+            m_driver.get(BASE_URL + "opennms/element/index.jsp");
+        }
+        capturePageTimings("searchPage");
     }
 
     protected void supportPage() {
-        LOG.debug("navigating to the support page");
-        m_driver.get(BASE_URL + "opennms/support/index.htm");
+        try (final StepTimings.Step step = StepTimings.start("supportPage")) {
+            LOG.debug("navigating to the support page");
+            m_driver.get(BASE_URL + "opennms/support/index.htm");
+        }
+        capturePageTimings("supportPage");
     }
 
     protected void goBack() {
@@ -781,15 +1408,34 @@ public class OpenNMSSeleniumTestCase {
     }
 
     public WebElement waitForElement(final WebDriverWait w, final By by) {
-        return waitUntil(null, w, new Callable<WebElement>() {
-            @Override public WebElement call() throws Exception {
-                final WebElement el = getDriver().findElement(by);
-                if (el.isDisplayed() && el.isEnabled()) {
-                    return el;
+        try (final StepTimings.Step step = StepTimings.start("waitForElement", by)) {
+            final DomQuery query = new DomQuery();
+            return waitForDisplayed(w, query, query.find(by)).getElement();
+        }
+    }
+
+    /**
+     * Wait until the lookup's element is displayed and enabled.  Each poll runs
+     * the whole query (and anything else the lookups ask for) in one script call.
+     */
+    protected DomQuery.Lookup waitForDisplayed(final WebDriverWait w, final DomQuery query, final DomQuery.Lookup lookup) {
+        lookup.displayed().enabled();
+        final WebDriverWait wdw = w == null? wait : w;
+        final ExpectedCondition<DomQuery.Lookup> condition = new ExpectedCondition<DomQuery.Lookup>() {
+            @Override public DomQuery.Lookup apply(final WebDriver driver) {
+                try {
+                    query.execute(driver);
+                } catch (final WebDriverException e) {
+                    // ie, the page is in the middle of loading
+                    return null;
                 }
-                return null;
+                return lookup.isDisplayedAndEnabled()? lookup : null;
             }
-        });
+        };
+        if (wdw instanceof BackoffWait) {
+            return ((BackoffWait)wdw).until("waitForDisplayed", condition);
+        }
+        return wdw.until(condition);
     }
 
     public void enterAutocompleteText(final By textInput, final String text) {
@@ -817,20 +1463,18 @@ public class OpenNMSSeleniumTestCase {
                         final WebElement el = getElementImmediately(by);
                         if (el == null) {
                             LOG.debug("clickUntilVaadinPopupAppears: element not found: {}", by);
-                            Thread.sleep(50);
                             return false;
                         } else {
                             LOG.debug("clickUntilVaadinPopupAppears: clicking element: {}", el);
                             el.click();
-                            Thread.sleep(50);
                         }
                     } catch (final Throwable t) {
                         LOG.debug("clickUntilVaadinPopupAppears: exception raised while attempting to click {}", by, t);
                         return false;
                     }
 
-                    popup = getVaadinPopup(driver, title);
-                    if (popup != null) {
+                    // give the popup a moment to appear before we try clicking again
+                    if (waitForVaadinPopup(driver, title, true)) {
                         return true;
                     }
                 } else if (popup.isDisplayed() && popup.isEnabled()) {
@@ -856,20 +1500,18 @@ public class OpenNMSSeleniumTestCase {
                         final WebElement el = getElementImmediately(by);
                         if (el == null) {
                             LOG.debug("clickIdUntilVaadinPopupDisappears: element not found: {}", by);
-                            Thread.sleep(50);
                             return false;
                         } else {
                             LOG.debug("clickIdUntilVaadinPopupDisappears: clicking element: {}", el);
                             el.click();
-                            Thread.sleep(50);
                         }
                     } catch (final Throwable t) {
                         LOG.debug("clickUntilVaadinPopupDisappears: exception raised while attempting to click {}", by, t);
                         return false;
                     }
 
-                    popup = getVaadinPopup(driver, title);
-                    if (popup == null) {
+                    // give the popup a moment to go away before we try clicking again
+                    if (waitForVaadinPopup(driver, title, false)) {
                         return true;
                     }
                 } else {
@@ -883,10 +1525,10 @@ public class OpenNMSSeleniumTestCase {
 
     protected boolean inVaadin() {
         try {
-            final WebElement element = getElementImmediately(By.className("v-generated-body"));
-            if (element != null) {
-                return true;
-            }
+            final DomQuery query = new DomQuery();
+            final DomQuery.Lookup body = query.find(By.className("v-generated-body"));
+            query.execute(getDriver());
+            return body.isPresent();
         } catch (final Exception e) {
         }
         return false;
@@ -904,6 +1546,20 @@ public class OpenNMSSeleniumTestCase {
         getDriver().switchTo().defaultContent();
     }
 
+    /**
+     * Briefly poll for a Vaadin popup to appear (or disappear) after a click.
+     *
+     * @return true if the popup reached the expected state
+     */
+    private boolean waitForVaadinPopup(final WebDriver driver, final String title, final boolean present) {
+        final Boolean result = new Poller("waitForVaadinPopup", 500).untilQuietly(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                return (getVaadinPopup(driver, title) != null) == present;
+            }
+        });
+        return result != null;
+    }
+
     public WebElement getVaadinPopup(final String title) {
         return getVaadinPopup(getDriver(), title);
     }
@@ -988,9 +1644,7 @@ public class OpenNMSSeleniumTestCase {
 
         // Selenium has a bug where the findElements(By) doesn't return elements; even if I attempt to do it manually
         // using JavascriptExecutor.execute(), so... parse the DOM on the Java side instead.  :/
-        final org.jsoup.nodes.Document doc = Jsoup.parse(m_driver.getPageSource());
-        final Elements matching = doc.select(css);
-        return matching.size();
+        return getDomSnapshots().count(css);
 
         // The original one-line implementation, for your edification.  Look at the majesty!
         // A single tear rolls down your cheek as you imagine what could have been, if
@@ -998,6 +1652,33 @@ public class OpenNMSSeleniumTestCase {
         //return getDriver().findElements(By.cssSelector(css)).size();
     }
 
+    /**
+     * The text of the first element matching the selector, or <code>null</code> if there isn't one.
+     */
+    public String getTextMatchingCss(final String css) {
+        LOG.debug("getTextMatchingCss: selector={}", css);
+        return getDomSnapshots().getText(css);
+    }
+
+    /**
+     * The given attribute of the first element matching the selector, or <code>null</code>.
+     */
+    public String getAttributeMatchingCss(final String css, final String attribute) {
+        LOG.debug("getAttributeMatchingCss: selector={}, attribute={}", css, attribute);
+        return getDomSnapshots().getAttribute(css, attribute);
+    }
+
+    /**
+     * A parsed snapshot of the current page for read-only queries, which is only
+     * re-fetched from the browser when the page changes.
+     */
+    protected DomSnapshotCache getDomSnapshots() {
+        if (m_domSnapshots == null) {
+            m_domSnapshots = new DomSnapshotCache(getDriver());
+        }
+        return m_domSnapshots;
+    }
+
     /**
      * CAUTION: There are a variety of Firefox-specific bugs related to using
      * {@link WebElement#sendKeys(CharSequence...)}. We're doing this bizarre
@@ -1007,56 +1688,61 @@ public class OpenNMSSeleniumTestCase {
      * @see https://code.google.com/p/selenium/issues/detail?id=8180
      */
     protected WebElement enterText(final By selector, final CharSequence... text) {
-        final StringBuilder sb = new StringBuilder();
-        for (final CharSequence seq : text) {
-            sb.append(seq);
-        }
-        final String textString = sb.toString();
-        LOG.debug("Enter text: '{}' into selector: '{}'", text, selector);
-
-        // First, attempt to focus on the element before typing
-        scrollToElement(selector);
-        final WebElement el = waitForElement(selector);
-        if (el.isDisplayed() && el.isEnabled()) {
-            el.click();
-        }
-        sleep(500);
-
-        final long end = System.currentTimeMillis() + LOAD_TIMEOUT;
-        boolean found = false;
-        int count = 0;
+        try (final StepTimings.Step step = StepTimings.start("enterText", selector)) {
+            final StringBuilder sb = new StringBuilder();
+            for (final CharSequence seq : text) {
+                sb.append(seq);
+            }
+            final String textString = sb.toString();
+            LOG.debug("Enter text: '{}' into selector: '{}'", text, selector);
 
-        final WebDriverWait shortWait = new WebDriverWait(m_driver, 10);
+            // First, attempt to focus on the element before typing
+            scrollToElement(selector).click();
+            sleep(500);
 
-        do {
-            LOG.debug("enterText({},{}): {}", selector, text, ++count);
-            // Clear the element content and then confirm it's really clear
-            waitForElement(selector).clear();
-            waitForValue(selector, "");
+            final long end = System.currentTimeMillis() + LOAD_TIMEOUT;
+            boolean found = false;
+            int count = 0;
 
-            // Click the element to make sure it's still got the focus
-            waitForElement(selector).click();
-            sleep(500);
-            // Send the keys
-            waitForElement(selector).sendKeys(text);
-            waitForElement(selector).click();
-            sleep(500);
+            final WebDriverWait shortWait = new BackoffWait(m_driver, 10000);
 
-            if (text.length == 1 && text[0] != Keys.ENTER) { // special case, carriage-return for a previously-entered entry
+            do {
+                LOG.debug("enterText({},{}): {}", selector, text, ++count);
                 try {
-                    final String elementText = waitForElement(shortWait, selector).getText();
-                    final String elementValue = waitForElement(shortWait, selector).getAttribute("value");
-                    found = elementText.contains(textString) || elementValue.contains(textString);
-                } catch (final Exception e) {
-                    LOG.warn("Failed when checking for {} to equal '{}'.", selector, textString, e);
+                    final WebElement element = waitForElement(selector);
+                    // Clear the element content and then confirm it's really clear
+                    element.clear();
+                    waitForValue(selector, "");
+
+                    // Click the element to make sure it's still got the focus
+                    element.click();
+                    sleep(500);
+                    // Send the keys
+                    element.sendKeys(text);
+                    element.click();
+                    sleep(500);
+                } catch (final StaleElementReferenceException e) {
+                    LOG.debug("enterText({}): element was replaced while typing, trying again.", selector);
+                    continue;
                 }
-            } else {
-                LOG.info("Skipped waiting for {} to equal {}", selector, textString);
-                found = true;
-            }
-        } while (!found && System.currentTimeMillis() < end);
 
-        return m_driver.findElement(selector);
+                if (text.length == 1 && text[0] != Keys.ENTER) { // special case, carriage-return for a previously-entered entry
+                    try {
+                        final DomQuery query = new DomQuery();
+                        final DomQuery.Lookup field = waitForDisplayed(shortWait, query, query.find(selector).text().value());
+                        final String elementValue = field.getValue();
+                        found = field.getText().contains(textString) || (elementValue != null && elementValue.contains(textString));
+                    } catch (final Exception e) {
+                        LOG.warn("Failed when checking for {} to equal '{}'.", selector, textString, e);
+                    }
+                } else {
+                    LOG.info("Skipped waiting for {} to equal {}", selector, textString);
+                    found = true;
+                }
+            } while (!found && System.currentTimeMillis() < end);
+
+            return m_driver.findElement(selector);
+        }
     }
 
     protected void sleep(final int millis) {
@@ -1088,11 +1774,9 @@ public class OpenNMSSeleniumTestCase {
      */
     protected static WebElement scrollToElement(final WebDriver driver, final WebElement element) {
         LOG.debug("scrollToElement: element={}", element);
-
-        final List<Integer> bounds = getBoundedRectangleOfElement(driver, element);
-        final int windowHeight = driver.manage().window().getSize().getHeight();
-        final JavascriptExecutor je = (JavascriptExecutor)driver;
-        je.executeScript("window.scrollTo(0, " + (bounds.get(1) - (windowHeight/2)) + ");");
+        final DomQuery query = new DomQuery();
+        query.find(element).scroll();
+        query.execute(driver);
         return element;
     }
 
@@ -1103,40 +1787,16 @@ public class OpenNMSSeleniumTestCase {
     protected WebElement scrollToElement(final By by, final boolean waitForElement) {
         LOG.debug("scrollToElement: by={}", by);
 
+        final DomQuery query = new DomQuery();
+        final DomQuery.Lookup lookup = query.find(by).scroll();
         if (waitForElement) {
-            try {
-                setImplicitWait(200, TimeUnit.MILLISECONDS);
-                final WebElement element = wait.until(new ExpectedCondition<WebElement>() {
-                    @Override public WebElement apply(final WebDriver driver) {
-                        final WebElement el = waitForElement? waitForElement(by) : driver.findElement(by);
-                        return doScroll(driver, el);
-                    }
-
-                });
-                if (element == null) {
-                    throw new OpenNMSTestException("Failed to scroll to element: " + by);
-                }
-                return element;
-            } finally {
-                setImplicitWait();
-            }
-        } else {
-            final WebDriver driver = getDriver();
-            final WebElement el = driver.findElement(by);
-            return doScroll(driver, el);
+            return waitForDisplayed(wait, query, lookup).getElement();
         }
-    }
-
-    private WebElement doScroll(final WebDriver driver, final WebElement element) {
-        try {
-            final List<Integer> bounds = getBoundedRectangleOfElement(driver, element);
-            final int windowHeight = driver.manage().window().getSize().getHeight();
-            final JavascriptExecutor je = (JavascriptExecutor)driver;
-            je.executeScript("window.scrollTo(0, " + (bounds.get(1) - (windowHeight/2)) + ");");
-            return element;
-        } catch (final Exception e) {
-            return null;
+        query.execute(getDriver());
+        if (!lookup.isPresent()) {
+            throw new NoSuchElementException("Unable to locate element: " + by);
         }
+        return lookup.getElement();
     }
 
     /**
@@ -1173,18 +1833,12 @@ public class OpenNMSSeleniumTestCase {
         });
     }
 
-    @SuppressWarnings("unchecked")
     protected static List<Integer> getBoundedRectangleOfElement(final WebDriver driver, final WebElement we) {
         LOG.debug("getBoundedRectangleOfElement: element={}", we);
-        final JavascriptExecutor je = (JavascriptExecutor)driver;
-        final List<String> bounds = (ArrayList<String>) je.executeScript(
-                                                                         "var rect = arguments[0].getBoundingClientRect();" +
-                                                                                 "return [ '' + parseInt(rect.left), '' + parseInt(rect.top), '' + parseInt(rect.width), '' + parseInt(rect.height) ]", we);
-        final List<Integer> ret = new ArrayList<>();
-        for (final String entry : bounds) {
-            ret.add(Integer.valueOf(entry));
-        }
-        return ret;
+        final DomQuery query = new DomQuery();
+        final DomQuery.Lookup lookup = query.find(we).bounds();
+        query.execute(driver);
+        return lookup.getBounds();
     }
 
     protected void clickId(final String id) throws InterruptedException {
@@ -1200,7 +1854,7 @@ public class OpenNMSSeleniumTestCase {
             try {
                 element = findElementById(id);
             } catch (final Throwable t) {
-                LOG.warn("Failed to locate id=" + id, t);
+                LOG.warn("Failed to locate id={}", id, t);
             }
 
             final long waitUntil = System.currentTimeMillis() + 60000;
@@ -1217,11 +1871,17 @@ public class OpenNMSSeleniumTestCase {
                     wait.until(ExpectedConditions.elementToBeClickable(By.id(id)));
                     element = findElementById(id);
                 } catch (final Throwable t) {
-                    LOG.warn("Failed to locate id=" + id, t);
+                    LOG.warn("Failed to locate id={}", id, t);
                 }
             }
-            Thread.sleep(1000);
-            element.click();
+            // keep trying until the click goes through
+            final WebElement clickable = element;
+            waitUntil(new Callable<Boolean>() {
+                @Override public Boolean call() throws Exception {
+                    clickable.click();
+                    return true;
+                }
+            });
         } finally {
             setImplicitWait();
         }
@@ -1239,7 +1899,7 @@ public class OpenNMSSeleniumTestCase {
         final WebDriverWait wdw = w == null? wait : w;
         try {
             setImplicitWait(implicitWait == null? 50 : implicitWait, TimeUnit.MILLISECONDS);
-            return wdw.until(new ExpectedCondition<T>() {
+            final ExpectedCondition<T> condition = new ExpectedCondition<T>() {
                 @Override
                 public T apply(final WebDriver driver) {
                     try {
@@ -1248,7 +1908,11 @@ public class OpenNMSSeleniumTestCase {
                         return null;
                     }
                 }
-            });
+            };
+            if (wdw instanceof BackoffWait) {
+                return ((BackoffWait)wdw).until(Poller.describe(callable), condition);
+            }
+            return wdw.until(condition);
         } finally {
             setImplicitWait();
         }
@@ -1259,71 +1923,16 @@ public class OpenNMSSeleniumTestCase {
     }
 
     protected ResponseData getRequest(final HttpRequestBase request) throws ClientProtocolException, IOException, InterruptedException {
-        final CountDownLatch waitForCompletion = new CountDownLatch(1);
-
-        final URI uri = request.getURI();
-        final HttpHost targetHost = new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme());
-        CredentialsProvider credsProvider = new BasicCredentialsProvider();
-        credsProvider.setCredentials(new AuthScope(targetHost.getHostName(), targetHost.getPort()), new UsernamePasswordCredentials(BASIC_AUTH_USERNAME, BASIC_AUTH_PASSWORD));
-        AuthCache authCache = new BasicAuthCache();
-        // Generate BASIC scheme object and add it to the local auth cache
-        BasicScheme basicAuth = new BasicScheme();
-        authCache.put(targetHost, basicAuth);
-
-        // Add AuthCache to the execution context
-        HttpClientContext context = HttpClientContext.create();
-        context.setCredentialsProvider(credsProvider);
-        context.setAuthCache(authCache);
-
-        final CloseableHttpClient client = HttpClients.createDefault();
-
-        final ResponseHandler<ResponseData> responseHandler = new ResponseHandler<ResponseData>() {
-            @Override
-            public ResponseData handleResponse(final HttpResponse response) throws ClientProtocolException, IOException {
-                try {
-                    final int status = response.getStatusLine().getStatusCode();
-                    String responseText = null;
-                    // 400 because we return that if you try to delete
-                    // something that is already deleted
-                    // 404 because it's OK if it's already not there
-                    if (status >= 200 && status < 300 || status == 400 || status == 404) {
-                        final HttpEntity entity = response.getEntity();
-                        if (entity != null) {
-                            responseText = EntityUtils.toString(entity);
-                            EntityUtils.consume(entity);
-                        }
-                        final ResponseData r = new ResponseData(status, responseText);
-                        return r;
-                    } else {
-                        throw new ClientProtocolException("Unexpected response status: " + status);
-                    }
-                } catch (final Exception e) {
-                    LOG.warn("Unhandled exception", e);
-                    return new ResponseData(-1, null);
-                } finally {
-                    waitForCompletion.countDown();
-                }
-            }
-        };
-
-        final ResponseData result = client.execute(targetHost, request, responseHandler, context);
-
-        waitForCompletion.await();
-        client.close();
-        return result;
+        return s_httpClient.execute(request);
     }
 
     public long getNodesInDatabase(final String foreignSource) {
         try {
-            final HttpGet request = new HttpGet(BASE_URL + "opennms/rest/nodes?foreignSource=" + URLEncoder.encode(foreignSource, "UTF-8"));
-            final ResponseData rd = getRequest(request);
-            LOG.debug("getNodesInDatabase: response={}", rd);
-
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            final Document document = builder.parse(new InputSource(new StringReader(rd.getResponseText())));
-            final Element rootElement = document.getDocumentElement();
-            return Long.valueOf(rootElement.getAttribute("totalCount"), 10);
+            // we only need the totalCount attribute, so ask for the smallest page possible
+            final HttpGet request = new HttpGet(BASE_URL + "opennms/rest/nodes?limit=1&foreignSource=" + URLEncoder.encode(foreignSource, "UTF-8"));
+            final long count = s_httpClient.execute(request, XmlCounts.TOTAL_COUNT_HANDLER);
+            LOG.debug("getNodesInDatabase: foreignSource={}, count={}", foreignSource, count);
+            return count;
         } catch (final Exception e) {
             throw new OpenNMSTestException(e);
         }
@@ -1341,40 +1950,52 @@ public class OpenNMSSeleniumTestCase {
     }
 
     public void deleteExistingRequisition(final String foreignSource) {
-        LOG.debug("deleteExistingRequisition: Deleting Requisition: {}", foreignSource);
+        try (final StepTimings.Step step = StepTimings.start("deleteExistingRequisition", foreignSource)) {
+            LOG.debug("deleteExistingRequisition: Deleting Requisition: {}", foreignSource);
 
-        final long waitUntil = System.currentTimeMillis() + (5 * 60 * 1000);
-        do {
-            long nodesInRequisition = -1;
-            long nodesInDatabase = -1;
+            final long waitUntil = System.currentTimeMillis() + (5 * 60 * 1000);
+            do {
+                long nodesInRequisition = -1;
+                long nodesInDatabase = -1;
 
-            try {
-                nodesInRequisition = getNodesInRequisition(foreignSource);
-                nodesInDatabase = getNodesInDatabase(foreignSource);
+                try {
+                    nodesInRequisition = getNodesInRequisition(foreignSource);
+                    nodesInDatabase = getNodesInDatabase(foreignSource);
 
-                LOG.debug("deleteExistingRequisition: nodesInRequisition={}, nodesInDatabase={}", nodesInRequisition, nodesInDatabase);
+                    LOG.debug("deleteExistingRequisition: nodesInRequisition={}, nodesInDatabase={}", nodesInRequisition, nodesInDatabase);
 
-                final String foreignSourceUrlFragment = URLEncoder.encode(foreignSource, "UTF-8");
+                    final String foreignSourceUrlFragment = URLEncoder.encode(foreignSource, "UTF-8");
 
-                if (nodesInDatabase > 0) {
-                    createRequisition(foreignSource);
-                }
+                    if (nodesInDatabase > 0) {
+                        createRequisition(foreignSource);
+                    }
 
-                if (requisitionExists(foreignSource)) {
-                    // make sure the requisition is deleted
-                    sendDelete("/rest/requisitions/" + foreignSourceUrlFragment);
-                    sendDelete("/rest/requisitions/deployed/" + foreignSourceUrlFragment);
-                    sendDelete("/rest/foreignSources/" + foreignSourceUrlFragment);
-                    sendDelete("/rest/foreignSources/deployed/" + foreignSourceUrlFragment);
+                    if (requisitionExists(foreignSource)) {
+                        // make sure the requisition is deleted
+                        waitForAll(Arrays.asList(
+                            sendDeleteAsync("/rest/requisitions/" + foreignSourceUrlFragment),
+                            sendDeleteAsync("/rest/requisitions/deployed/" + foreignSourceUrlFragment),
+                            sendDeleteAsync("/rest/foreignSources/" + foreignSourceUrlFragment),
+                            sendDeleteAsync("/rest/foreignSources/deployed/" + foreignSourceUrlFragment)
+                        ));
+                    }
+                } catch (final Exception e) {
+                    throw new OpenNMSTestException(e);
                 }
-                Thread.sleep(1000);
-            } catch (final Exception e) {
-                throw new OpenNMSTestException(e);
-            }
-            if (System.currentTimeMillis() > waitUntil) {
-                throw new OpenNMSTestException("Gave up waiting to delete requisition '" + foreignSource + "'.  This should totally not happen.");
+                if (System.currentTimeMillis() > waitUntil) {
+                    throw new OpenNMSTestException("Gave up waiting to delete requisition '" + foreignSource + "'.  This should totally not happen.");
+                }
+            } while (!waitForRequisitionToDisappear(foreignSource));
+        }
+    }
+
+    private boolean waitForRequisitionToDisappear(final String foreignSource) {
+        final Boolean gone = new Poller("waitForRequisitionToDisappear", 1000).untilQuietly(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                return !requisitionExists(foreignSource);
             }
-        } while (requisitionExists(foreignSource));
+        });
+        return gone != null;
     }
 
     @Deprecated
@@ -1400,27 +2021,29 @@ public class OpenNMSSeleniumTestCase {
     }
 
     protected void createRequisition(final String foreignSource) {
-        LOG.debug("Creating empty requisition: " + foreignSource);
-        final String emptyRequisition = "<model-import xmlns=\"http://xmlns.opennms.org/xsd/config/model-import\" date-stamp=\"2013-03-29T11:36:55.901-04:00\" foreign-source=\"" + foreignSource + "\" last-import=\"2016-03-29T10:40:23.947-04:00\"></model-import>";
-        createRequisition(foreignSource, emptyRequisition, 0);
+        LOG.debug("Creating empty requisition: {}", foreignSource);
+        createRequisition(foreignSource, new RequisitionXml(foreignSource).toXml(), 0);
     }
 
     protected void createRequisition(final String foreignSource, final String xml, final int expectedNodes) {
-        LOG.debug("Creating requisition from XML: " + foreignSource);
-        try {
-            final String foreignSourceUrlFragment = URLEncoder.encode(foreignSource, "UTF-8");
+        s_fixtures.mark(FixtureTracker.Kind.REQUISITION, foreignSource);
+        try (final StepTimings.Step step = StepTimings.start("createRequisition", foreignSource)) {
+            LOG.debug("Creating requisition from XML: {}", foreignSource);
+            try {
+                final String foreignSourceUrlFragment = URLEncoder.encode(foreignSource, "UTF-8");
 
-            sendPost("/rest/requisitions", xml);
-            requisitionWait.until(new WaitForNodesInRequisition(expectedNodes));
+                sendPost("/rest/requisitions", xml);
+                requisitionWait.until(new WaitForNodesInRequisition(foreignSource, expectedNodes));
 
-            final HttpPut request = new HttpPut(BASE_URL + "opennms/rest/requisitions/" + foreignSourceUrlFragment + "/import");
-            final Integer status = doRequest(request);
-            if (status == null || status < 200 || status >= 400) {
-                throw new OpenNMSTestException("Unknown status: " + status);
+                final HttpPut request = new HttpPut(BASE_URL + "opennms/rest/requisitions/" + foreignSourceUrlFragment + "/import");
+                final Integer status = doRequest(request);
+                if (status == null || status < 200 || status >= 400) {
+                    throw new OpenNMSTestException("Unknown status: " + status);
+                }
+                requisitionWait.until(new WaitForNodesInDatabase(foreignSource, expectedNodes));
+            } catch (final Exception e) {
+                throw new OpenNMSTestException(e);
             }
-            requisitionWait.until(new WaitForNodesInDatabase(expectedNodes));
-        } catch (final Exception e) {
-            throw new OpenNMSTestException(e);
         }
     }
 
@@ -1434,11 +2057,16 @@ public class OpenNMSSeleniumTestCase {
 
     protected void createForeignSource(final String foreignSource, final String xml) {
         LOG.debug("Creating foreign source definition: {}", foreignSource);
+        s_fixtures.mark(FixtureTracker.Kind.FOREIGN_SOURCE, foreignSource);
         try {
             sendPost("/rest/foreignSources", xml);
             // make sure it gets written to disk
-            doRequest(new HttpGet(BASE_URL + "/rest/foreignSources"));
-            Thread.sleep(2000);
+            final HttpGet request = new HttpGet(BASE_URL + "opennms/rest/foreignSources/" + URLEncoder.encode(foreignSource, "UTF-8"));
+            new Poller("createForeignSource", REQ_TIMEOUT).until(new Callable<Boolean>() {
+                @Override public Boolean call() throws Exception {
+                    return doRequest(request) == 200;
+                }
+            });
         } catch (final Exception e) {
             throw new OpenNMSTestException(e);
         }
@@ -1471,25 +2099,8 @@ public class OpenNMSSeleniumTestCase {
     protected long getNodesInRequisition(final String foreignSource) {
         try {
             final HttpGet request = new HttpGet(BASE_URL + "opennms/rest/requisitions/" + URLEncoder.encode(foreignSource, "UTF-8"));
-            final ResponseData rd = getRequest(request);
-            LOG.debug("getNodesInRequisition: response={}", rd);
-
-            if (rd.getStatus() == 404 || rd.getStatus() == -1 || rd.getResponseText() == null) {
-                return 0;
-            }
-
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            final Document document = builder.parse(new InputSource(new StringReader(rd.getResponseText())));
-            final Element rootElement = document.getDocumentElement();
-            long count = 0;
-            final NodeList children = rootElement.getChildNodes();
-            for (int i = 0; i < children.getLength(); i++) {
-                final Node child = children.item(i);
-                if ("node".equals(child.getNodeName())) {
-                    count++;
-                }
-            }
+            final long count = s_httpClient.execute(request, XmlCounts.NODE_CHILDREN_HANDLER);
+            LOG.debug("getNodesInRequisition: foreignSource={}, count={}", foreignSource, count);
             return count;
         } catch (final Exception e) {
             throw new OpenNMSTestException(e);
@@ -1536,18 +2147,8 @@ public class OpenNMSSeleniumTestCase {
 
     protected void sendPost(final String urlFragment, final String body, final Integer expectedResponse) throws ClientProtocolException, IOException, InterruptedException {
         LOG.debug("sendPost: url={}, expectedResponse={}, body={}", urlFragment, expectedResponse, body);
-        final HttpPost post = new HttpPost(BASE_URL + "opennms" + (urlFragment.startsWith("/")? urlFragment : "/" + urlFragment));
-        post.setEntity(new StringEntity(body, ContentType.APPLICATION_XML));
-        final Integer response = doRequest(post);
-        if (expectedResponse == null) {
-            if (response == null || (response != 303 && response != 200 && response != 201 && response != 202)) {
-                throw new RuntimeException("Bad response code! (" + response + "; expected 200, 201, 202, or 303)");
-            }
-        } else {
-            if (!expectedResponse.equals(response)) {
-                throw new RuntimeException("Bad response code! (" + response + "; expected " + expectedResponse + ")");
-            }
-        }
+        s_fixtures.request(urlFragment, body);
+        checkPostOrPutResponse(doRequest(createPost(urlFragment, body)), expectedResponse);
     }
 
     protected void sendPut(final String urlFragment, final String body) throws ClientProtocolException, IOException, InterruptedException {
@@ -1556,9 +2157,91 @@ public class OpenNMSSeleniumTestCase {
 
     protected void sendPut(final String urlFragment, final String body, final Integer expectedResponse) throws ClientProtocolException, IOException, InterruptedException {
         LOG.debug("sendPut: url={}, expectedResponse={}, body={}", urlFragment, expectedResponse, body);
+        s_fixtures.request(urlFragment, body);
+        checkPostOrPutResponse(doRequest(createPut(urlFragment, body)), expectedResponse);
+    }
+
+    protected void sendDelete(final String urlFragment) throws ClientProtocolException, IOException, InterruptedException {
+        sendDelete(urlFragment, null);
+    }
+
+    protected void sendDelete(final String urlFragment, final Integer expectedResponse) throws ClientProtocolException, IOException, InterruptedException {
+        LOG.debug("sendDelete: url={}, expectedResponse={}", urlFragment, expectedResponse);
+        checkDeleteResponse(doRequest(createDelete(urlFragment)), expectedResponse);
+    }
+
+    protected ListenableFuture<ResponseData> getRequestAsync(final HttpRequestBase request) {
+        return s_asyncHttpClient.execute(request);
+    }
+
+    protected ListenableFuture<ResponseData> sendPostAsync(final String urlFragment, final String body) {
+        return sendPostAsync(urlFragment, body, null);
+    }
+
+    protected ListenableFuture<ResponseData> sendPostAsync(final String urlFragment, final String body, final Integer expectedResponse) {
+        LOG.debug("sendPostAsync: url={}, expectedResponse={}, body={}", urlFragment, expectedResponse, body);
+        s_fixtures.request(urlFragment, body);
+        return Futures.transform(getRequestAsync(createPost(urlFragment, body)), new Function<ResponseData, ResponseData>() {
+            @Override public ResponseData apply(final ResponseData rd) {
+                checkPostOrPutResponse(rd.getStatus(), expectedResponse);
+                return rd;
+            }
+        });
+    }
+
+    protected ListenableFuture<ResponseData> sendPutAsync(final String urlFragment, final String body) {
+        return sendPutAsync(urlFragment, body, null);
+    }
+
+    protected ListenableFuture<ResponseData> sendPutAsync(final String urlFragment, final String body, final Integer expectedResponse) {
+        LOG.debug("sendPutAsync: url={}, expectedResponse={}, body={}", urlFragment, expectedResponse, body);
+        s_fixtures.request(urlFragment, body);
+        return Futures.transform(getRequestAsync(createPut(urlFragment, body)), new Function<ResponseData, ResponseData>() {
+            @Override public ResponseData apply(final ResponseData rd) {
+                checkPostOrPutResponse(rd.getStatus(), expectedResponse);
+                return rd;
+            }
+        });
+    }
+
+    protected ListenableFuture<ResponseData> sendDeleteAsync(final String urlFragment) {
+        return sendDeleteAsync(urlFragment, null);
+    }
+
+    protected ListenableFuture<ResponseData> sendDeleteAsync(final String urlFragment, final Integer expectedResponse) {
+        LOG.debug("sendDeleteAsync: url={}, expectedResponse={}", urlFragment, expectedResponse);
+        return Futures.transform(getRequestAsync(createDelete(urlFragment)), new Function<ResponseData, ResponseData>() {
+            @Override public ResponseData apply(final ResponseData rd) {
+                checkDeleteResponse(rd.getStatus(), expectedResponse);
+                return rd;
+            }
+        });
+    }
+
+    /**
+     * Wait for a batch of asynchronous requests to finish.  The first failure is rethrown.
+     */
+    protected <T> List<T> waitForAll(final List<? extends ListenableFuture<? extends T>> futures) throws IOException {
+        return AsyncRestClient.join(futures, REQ_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private static HttpPost createPost(final String urlFragment, final String body) {
+        final HttpPost post = new HttpPost(BASE_URL + "opennms" + (urlFragment.startsWith("/")? urlFragment : "/" + urlFragment));
+        post.setEntity(new StringEntity(body, ContentType.APPLICATION_XML));
+        return post;
+    }
+
+    private static HttpPut createPut(final String urlFragment, final String body) {
         final HttpPut put = new HttpPut(BASE_URL + "opennms" + (urlFragment.startsWith("/")? urlFragment : "/" + urlFragment));
         put.setEntity(new StringEntity(body, ContentType.APPLICATION_FORM_URLENCODED));
-        final Integer response = doRequest(put);
+        return put;
+    }
+
+    private static HttpDelete createDelete(final String urlFragment) {
+        return new HttpDelete(BASE_URL + "opennms" + (urlFragment.startsWith("/") ? urlFragment : "/" + urlFragment));
+    }
+
+    private static void checkPostOrPutResponse(final Integer response, final Integer expectedResponse) {
         if (expectedResponse == null) {
             if (response == null || (response != 303 && response != 200 && response != 201 && response != 202)) {
                 throw new RuntimeException("Bad response code! (" + response + "; expected 200, 201, 202, or 303)");
@@ -1570,14 +2253,7 @@ public class OpenNMSSeleniumTestCase {
         }
     }
 
-    protected void sendDelete(final String urlFragment) throws ClientProtocolException, IOException, InterruptedException {
-        sendDelete(urlFragment, null);
-    }
-
-    protected void sendDelete(final String urlFragment, final Integer expectedResponse) throws ClientProtocolException, IOException, InterruptedException {
-        LOG.debug("sendDelete: url={}, expectedResponse={}", urlFragment, expectedResponse);
-        final HttpDelete del = new HttpDelete(BASE_URL + "opennms" + (urlFragment.startsWith("/") ? urlFragment : "/" + urlFragment));
-        final Integer response = doRequest(del);
+    private static void checkDeleteResponse(final Integer response, final Integer expectedResponse) {
         if (expectedResponse == null) {
             if (response == null || (response != 303 && response != 200 && response != 202 && response != 204)) {
                 throw new RuntimeException("Bad response code! (" + response + "; expected 200, 202, 204, or 303)");
@@ -0,0 +1,133 @@
+package org.opennms.smoketest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds requisition (<code>model-import</code>) XML for the provisioning REST API.
+ *
+ * <pre>
+ * final String xml = new RequisitionXml("SeleniumTestGroup")
+ *     .node("1", "localhost").iface("127.0.0.1").service("ICMP").category("Servers")
+ *     .toXml();
+ * </pre>
+ */
+public class RequisitionXml {
+    private static final String NAMESPACE = "http://xmlns.opennms.org/xsd/config/model-import";
+
+    private final String m_foreignSource;
+    private final List<Node> m_nodes = new ArrayList<>();
+
+    private static final class Node {
+        private final String m_foreignId;
+        private final String m_label;
+        private final List<Interface> m_interfaces = new ArrayList<>();
+        private final List<String> m_categories = new ArrayList<>();
+
+        private Node(final String foreignId, final String label) {
+            m_foreignId = foreignId;
+            m_label = label;
+        }
+    }
+
+    private static final class Interface {
+        private final String m_ipAddress;
+        private final List<String> m_services = new ArrayList<>();
+
+        private Interface(final String ipAddress) {
+            m_ipAddress = ipAddress;
+        }
+    }
+
+    public RequisitionXml(final String foreignSource) {
+        m_foreignSource = foreignSource;
+    }
+
+    /**
+     * Add a node; following interfaces and categories are added to it.
+     */
+    public RequisitionXml node(final String foreignId, final String label) {
+        m_nodes.add(new Node(foreignId, label));
+        return this;
+    }
+
+    /**
+     * Add an interface to the last node; following services are added to it.
+     */
+    public RequisitionXml iface(final String ipAddress) {
+        lastNode().m_interfaces.add(new Interface(ipAddress));
+        return this;
+    }
+
+    public RequisitionXml service(final String serviceName) {
+        final List<Interface> interfaces = lastNode().m_interfaces;
+        if (interfaces.isEmpty()) {
+            throw new IllegalStateException("Add an interface before adding services.");
+        }
+        interfaces.get(interfaces.size() - 1).m_services.add(serviceName);
+        return this;
+    }
+
+    public RequisitionXml category(final String category) {
+        lastNode().m_categories.add(category);
+        return this;
+    }
+
+    public int getNodeCount() {
+        return m_nodes.size();
+    }
+
+    public String toXml() {
+        final StringBuilder sb = new StringBuilder(256 + m_nodes.size() * 256);
+        sb.append("<model-import xmlns=\"").append(NAMESPACE).append("\" date-stamp=\"2013-03-29T11:36:55.901-04:00\" foreign-source=\"");
+        escape(sb, m_foreignSource).append("\" last-import=\"2016-03-29T10:40:23.947-04:00\">");
+        for (final Node node : m_nodes) {
+            sb.append("<node foreign-id=\"");
+            escape(sb, node.m_foreignId).append("\" node-label=\"");
+            escape(sb, node.m_label).append("\">");
+            for (final Interface iface : node.m_interfaces) {
+                sb.append("<interface ip-addr=\"");
+                escape(sb, iface.m_ipAddress).append("\" status=\"1\" snmp-primary=\"N\">");
+                for (final String service : iface.m_services) {
+                    sb.append("<monitored-service service-name=\"");
+                    escape(sb, service).append("\"/>");
+                }
+                sb.append("</interface>");
+            }
+            for (final String category : node.m_categories) {
+                sb.append("<category name=\"");
+                escape(sb, category).append("\"/>");
+            }
+            sb.append("</node>");
+        }
+        sb.append("</model-import>");
+        return sb.toString();
+    }
+
+    private Node lastNode() {
+        if (m_nodes.isEmpty()) {
+            throw new IllegalStateException("Add a node first.");
+        }
+        return m_nodes.get(m_nodes.size() - 1);
+    }
+
+    private static StringBuilder escape(final StringBuilder sb, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '&': sb.append("&amp;"); break;
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '"': sb.append("&quot;"); break;
+                case '\'': sb.append("&apos;"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    @Override
+    public String toString() {
+        return toXml();
+    }
+}
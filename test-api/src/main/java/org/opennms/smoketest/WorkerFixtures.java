@@ -0,0 +1,167 @@
+package org.opennms.smoketest;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fixture names for parallel test workers.
+ *
+ * When several forked JVMs run tests against the same OpenNMS, each needs its
+ * own requisition, user, and group, or they delete each other's.  A worker's
+ * fixture names get its worker ID as a suffix, ie <code>SeleniumTestGroup-w2</code>.
+ * The worker ID comes from <code>org.opennms.smoketest.worker-id</code>, or from
+ * <code>surefire.forkNumber</code>; pass it to the forks with:
+ *
+ * <pre>
+ * &lt;systemPropertyVariables&gt;
+ *   &lt;org.opennms.smoketest.worker-id&gt;${surefire.forkNumber}&lt;/org.opennms.smoketest.worker-id&gt;
+ * &lt;/systemPropertyVariables&gt;
+ * </pre>
+ *
+ * Without a worker ID, names are left as they are.
+ *
+ * Each worker holds a lock on <code>&lt;worker-dir&gt;/&lt;id&gt;.lock</code> for as long
+ * as it runs (<code>target/workers</code> by default; set
+ * <code>org.opennms.smoketest.worker-dir</code> to share it between modules).  The
+ * operating system releases the lock if the worker dies, so any lock file we
+ * can lock belongs to a worker that crashed, and {@link #sweep(Sweeper)} cleans
+ * up after it.
+ */
+public abstract class WorkerFixtures {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerFixtures.class);
+
+    public static final String WORKER_ID = System.getProperty("org.opennms.smoketest.worker-id", System.getProperty("surefire.forkNumber", "")).replaceAll("[^A-Za-z0-9]", "");
+
+    private static final Path LOCK_DIRECTORY = Paths.get(System.getProperty("org.opennms.smoketest.worker-dir", "target/workers"));
+    private static final String LOCK_SUFFIX = ".lock";
+    // the ID in lock file names for a worker without one
+    private static final String DEFAULT_ID = "default";
+
+    // held until the JVM exits
+    private static FileChannel s_lockChannel;
+
+    /**
+     * Deletes the fixtures of a worker that has gone away.
+     */
+    public static interface Sweeper {
+        void sweep(String workerId) throws Exception;
+    }
+
+    /**
+     * The name of a fixture for this worker.
+     */
+    public static String name(final String base) {
+        return name(base, WORKER_ID);
+    }
+
+    /**
+     * The name of a fixture for the given worker.
+     */
+    public static String name(final String base, final String workerId) {
+        return workerId == null || workerId.isEmpty() || DEFAULT_ID.equals(workerId)? base : base + "-w" + workerId;
+    }
+
+    /**
+     * Lock this worker's lock file, if we haven't already.  If another worker
+     * is sweeping a crashed worker with the same ID, wait for it to finish.
+     */
+    public static synchronized void register() {
+        if (s_lockChannel != null) {
+            return;
+        }
+        final Path lockFile = LOCK_DIRECTORY.resolve((WORKER_ID.isEmpty()? DEFAULT_ID : WORKER_ID) + LOCK_SUFFIX);
+        final long giveUp = System.currentTimeMillis() + 60000;
+        try {
+            Files.createDirectories(LOCK_DIRECTORY);
+            while (true) {
+                final FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                // a sweeper deletes the file before unlocking it, so make sure we didn't lock a file that's gone
+                if (channel.tryLock() != null && Files.exists(lockFile)) {
+                    s_lockChannel = channel;
+                    break;
+                }
+                channel.close();
+                if (System.currentTimeMillis() > giveUp) {
+                    LOG.warn("Another worker is already running with ID '{}'; fixtures will collide.", WORKER_ID);
+                    return;
+                }
+                Thread.sleep(500);
+            }
+        } catch (final IOException | OverlappingFileLockException e) {
+            LOG.warn("Unable to lock {}; this worker's fixtures won't be cleaned up if it crashes.", lockFile, e);
+            return;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // a worker that exits normally has cleaned up after itself
+        Runtime.getRuntime().addShutdownHook(new Thread("worker-lock-release") {
+            @Override public void run() {
+                try {
+                    Files.deleteIfExists(lockFile);
+                    s_lockChannel.close();
+                } catch (final IOException e) {
+                    LOG.debug("Failed to remove {}", lockFile, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Clean up after every worker whose lock file is no longer locked.  Each
+     * abandoned worker is locked while it's swept, so two workers never sweep
+     * the same one, and its lock file is removed once the sweep succeeds.
+     */
+    public static synchronized void sweep(final Sweeper sweeper) {
+        register();
+        if (!Files.isDirectory(LOCK_DIRECTORY)) {
+            return;
+        }
+        final String ourId = WORKER_ID.isEmpty()? DEFAULT_ID : WORKER_ID;
+        try (final DirectoryStream<Path> lockFiles = Files.newDirectoryStream(LOCK_DIRECTORY, "*" + LOCK_SUFFIX)) {
+            for (final Path lockFile : lockFiles) {
+                final String name = lockFile.getFileName().toString();
+                final String workerId = name.substring(0, name.length() - LOCK_SUFFIX.length());
+                if (!workerId.equals(ourId)) {
+                    sweep(lockFile, workerId, sweeper);
+                }
+            }
+        } catch (final IOException e) {
+            LOG.warn("Unable to look for abandoned workers in {}", LOCK_DIRECTORY, e);
+        }
+    }
+
+    private static void sweep(final Path lockFile, final String workerId, final Sweeper sweeper) {
+        try (final FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            final FileLock lock = channel.tryLock();
+            if (lock == null) {
+                // still running
+                return;
+            }
+            try {
+                LOG.info("Worker '{}' went away without cleaning up; deleting its fixtures.", workerId);
+                sweeper.sweep(workerId);
+                Files.deleteIfExists(lockFile);
+            } catch (final Exception e) {
+                LOG.warn("Failed to clean up after worker '{}'; will try again next run.", workerId, e);
+            } finally {
+                if (lock.isValid()) {
+                    lock.release();
+                }
+            }
+        } catch (final IOException | OverlappingFileLockException e) {
+            LOG.debug("Unable to check worker lock {}", lockFile, e);
+        }
+    }
+}
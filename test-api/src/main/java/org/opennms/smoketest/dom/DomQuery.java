@@ -0,0 +1,298 @@
+package org.opennms.smoketest.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * A batch of element lookups which are all resolved in the browser with a
+ * single <code>executeScript</code> call, instead of one WebDriver round trip
+ * per element and per property.
+ *
+ * <pre>
+ * final DomQuery query = new DomQuery();
+ * final DomQuery.Lookup input = query.find(By.id("foo")).displayed().enabled().value();
+ * final DomQuery.Lookup label = query.find(By.cssSelector("label[for=foo]")).text();
+ * query.execute(driver);
+ * if (input.isDisplayed()) ...
+ * </pre>
+ *
+ * Selectors created with the standard {@link By} factory methods are translated
+ * to JavaScript; any other {@link By} is resolved with a normal <code>findElements</code>
+ * call first, and its properties are still read in the batch.
+ */
+public class DomQuery {
+    private static final String SCRIPT =
+            "var specs = arguments[0], results = [];" +
+            "function byLinkText(text, partial) {" +
+            "  var links = document.getElementsByTagName('a');" +
+            "  for (var i = 0; i < links.length; i++) {" +
+            "    var t = (links[i].innerText !== undefined ? links[i].innerText : links[i].textContent).trim();" +
+            "    if (partial ? t.indexOf(text) >= 0 : t === text) { return links[i]; }" +
+            "  }" +
+            "  return null;" +
+            "}" +
+            "function find(spec) {" +
+            "  switch (spec.how) {" +
+            "    case 'element': return spec.element;" +
+            "    case 'id': return document.getElementById(spec.what);" +
+            "    case 'name': return document.getElementsByName(spec.what)[0] || null;" +
+            "    case 'className': return document.getElementsByClassName(spec.what)[0] || null;" +
+            "    case 'tagName': return document.getElementsByTagName(spec.what)[0] || null;" +
+            "    case 'cssSelector': return document.querySelector(spec.what);" +
+            "    case 'xpath': return document.evaluate(spec.what, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;" +
+            "    case 'linkText': return byLinkText(spec.what, false);" +
+            "    case 'partialLinkText': return byLinkText(spec.what, true);" +
+            "  }" +
+            "  return null;" +
+            "}" +
+            "for (var i = 0; i < specs.length; i++) {" +
+            "  var spec = specs[i], el = null, result = { found: false };" +
+            "  try { el = find(spec); } catch (e) { result.error = '' + e; }" +
+            "  if (el) {" +
+            "    result.found = true;" +
+            "    result.element = el;" +
+            "    if (spec.scroll) { window.scrollTo(0, parseInt(el.getBoundingClientRect().top) - (window.outerHeight / 2)); }" +
+            "    if (spec.displayed) {" +
+            "      var style = window.getComputedStyle(el);" +
+            "      result.displayed = !!(el.offsetWidth || el.offsetHeight || el.getClientRects().length) && style.visibility !== 'hidden' && style.display !== 'none';" +
+            "    }" +
+            "    if (spec.enabled) { result.enabled = !el.disabled; }" +
+            "    if (spec.text) { result.text = (el.innerText !== undefined ? el.innerText : el.textContent).trim(); }" +
+            "    if (spec.value) { result.value = el.value === undefined || el.value === null ? null : '' + el.value; }" +
+            "    if (spec.attributes.length > 0) {" +
+            "      result.attributes = {};" +
+            "      for (var j = 0; j < spec.attributes.length; j++) { result.attributes[spec.attributes[j]] = el.getAttribute(spec.attributes[j]); }" +
+            "    }" +
+            "    if (spec.bounds) {" +
+            "      var rect = el.getBoundingClientRect();" +
+            "      result.bounds = [ '' + parseInt(rect.left), '' + parseInt(rect.top), '' + parseInt(rect.width), '' + parseInt(rect.height) ];" +
+            "    }" +
+            "  }" +
+            "  results.push(result);" +
+            "}" +
+            "return results;";
+
+    private final List<Lookup> m_lookups = new ArrayList<>();
+
+    /**
+     * Look up the first element matching the selector.
+     */
+    public Lookup find(final By by) {
+        final Lookup lookup = new Lookup(by, null);
+        m_lookups.add(lookup);
+        return lookup;
+    }
+
+    /**
+     * Read properties of an element that has already been found.
+     */
+    public Lookup find(final WebElement element) {
+        final Lookup lookup = new Lookup(null, element);
+        m_lookups.add(lookup);
+        return lookup;
+    }
+
+    /**
+     * Run all of the lookups in one script call.  Results are read from the
+     * {@link Lookup}s, and replaced if the query is executed again.
+     */
+    public DomQuery execute(final WebDriver driver) {
+        final List<Map<String,Object>> specs = new ArrayList<>();
+        for (final Lookup lookup : m_lookups) {
+            specs.add(lookup.toSpec(driver));
+        }
+        final Object ret = ((JavascriptExecutor)driver).executeScript(SCRIPT, specs);
+        if (!(ret instanceof List)) {
+            throw new IllegalStateException("Unexpected DOM query result: " + ret);
+        }
+        final List<?> results = (List<?>)ret;
+        for (int i = 0; i < m_lookups.size(); i++) {
+            m_lookups.get(i).setResult(i < results.size() && results.get(i) instanceof Map? (Map<?,?>)results.get(i) : Collections.emptyMap());
+        }
+        return this;
+    }
+
+    /**
+     * One element lookup, and the properties to read from it.
+     */
+    public static final class Lookup {
+        private final By m_by;
+        private final WebElement m_element;
+        private boolean m_scroll = false;
+        private boolean m_displayed = false;
+        private boolean m_enabled = false;
+        private boolean m_text = false;
+        private boolean m_value = false;
+        private boolean m_bounds = false;
+        private final List<String> m_attributes = new ArrayList<>();
+        private Map<?,?> m_result;
+
+        private Lookup(final By by, final WebElement element) {
+            m_by = by;
+            m_element = element;
+        }
+
+        /**
+         * Scroll the window so the element is (roughly) in the middle of it.
+         */
+        public Lookup scroll() {
+            m_scroll = true;
+            return this;
+        }
+        public Lookup displayed() {
+            m_displayed = true;
+            return this;
+        }
+        public Lookup enabled() {
+            m_enabled = true;
+            return this;
+        }
+        public Lookup text() {
+            m_text = true;
+            return this;
+        }
+        /**
+         * The element's current <code>value</code> property (not the attribute), ie for inputs.
+         */
+        public Lookup value() {
+            m_value = true;
+            return this;
+        }
+        public Lookup attribute(final String name) {
+            m_attributes.add(name);
+            return this;
+        }
+        /**
+         * The element's bounding rectangle, as [left, top, width, height].
+         */
+        public Lookup bounds() {
+            m_bounds = true;
+            return this;
+        }
+
+        public boolean isPresent() {
+            return Boolean.TRUE.equals(result().get("found"));
+        }
+        public WebElement getElement() {
+            final Object element = result().get("element");
+            return element instanceof WebElement? (WebElement)element : null;
+        }
+        public boolean isDisplayed() {
+            return Boolean.TRUE.equals(result().get("displayed"));
+        }
+        public boolean isEnabled() {
+            return Boolean.TRUE.equals(result().get("enabled"));
+        }
+        public boolean isDisplayedAndEnabled() {
+            return isDisplayed() && isEnabled();
+        }
+        public String getText() {
+            final Object text = result().get("text");
+            return text == null? null : text.toString();
+        }
+        public String getValue() {
+            final Object value = result().get("value");
+            return value == null? null : value.toString();
+        }
+        public String getAttribute(final String name) {
+            final Object attributes = result().get("attributes");
+            if (attributes instanceof Map) {
+                final Object value = ((Map<?,?>)attributes).get(name);
+                return value == null? null : value.toString();
+            }
+            return null;
+        }
+        public List<Integer> getBounds() {
+            final Object bounds = result().get("bounds");
+            if (!(bounds instanceof List)) {
+                return null;
+            }
+            final List<Integer> ret = new ArrayList<>();
+            for (final Object entry : (List<?>)bounds) {
+                ret.add(Integer.valueOf(entry.toString()));
+            }
+            return ret;
+        }
+        /**
+         * The script error raised while finding the element, if any (ie, an invalid selector).
+         */
+        public String getError() {
+            final Object error = result().get("error");
+            return error == null? null : error.toString();
+        }
+
+        private Map<?,?> result() {
+            if (m_result == null) {
+                throw new IllegalStateException("Query has not been executed yet.");
+            }
+            return m_result;
+        }
+
+        private void setResult(final Map<?,?> result) {
+            m_result = result;
+        }
+
+        private Map<String,Object> toSpec(final WebDriver driver) {
+            final Map<String,Object> spec = new HashMap<>();
+            WebElement element = m_element;
+            if (element == null) {
+                final String how = getHow(m_by);
+                if (how != null) {
+                    spec.put("how", how);
+                    spec.put("what", m_by.toString().substring(m_by.toString().indexOf(": ") + 2));
+                } else {
+                    // not a selector we can translate, so find it the slow way
+                    final List<WebElement> elements = driver.findElements(m_by);
+                    element = elements.isEmpty()? null : elements.get(0);
+                }
+            }
+            if (!spec.containsKey("how")) {
+                spec.put("how", element == null? "none" : "element");
+                spec.put("element", element);
+            }
+            spec.put("scroll", m_scroll);
+            spec.put("displayed", m_displayed);
+            spec.put("enabled", m_enabled);
+            spec.put("text", m_text);
+            spec.put("value", m_value);
+            spec.put("bounds", m_bounds);
+            spec.put("attributes", m_attributes);
+            return spec;
+        }
+
+        private static String getHow(final By by) {
+            final String str = by.toString();
+            final int index = str.indexOf(": ");
+            if (!str.startsWith("By.") || index < 0) {
+                return null;
+            }
+            final String how = str.substring(3, index);
+            switch (how) {
+                case "id":
+                case "name":
+                case "className":
+                case "tagName":
+                case "cssSelector":
+                case "xpath":
+                case "linkText":
+                case "partialLinkText":
+                    return how;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Lookup [" + (m_by == null? m_element : m_by) + "]";
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.opennms.smoketest.dom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers read-only CSS, text, and attribute queries from a parsed copy of the
+ * page source, which is only fetched again when the page has changed.
+ *
+ * Changes are detected with a {@link org.openqa.selenium.JavascriptExecutor script}
+ * that installs a <code>MutationObserver</code> counting DOM mutations.  Each page
+ * load gets a new random token, so navigating (even to the same URL) also
+ * invalidates the snapshot.  If the driver can't run scripts, or the browser
+ * has no <code>MutationObserver</code>, every query fetches the page again.
+ */
+public class DomSnapshotCache {
+    private static final Logger LOG = LoggerFactory.getLogger(DomSnapshotCache.class);
+
+    private static final String VERSION_SCRIPT =
+            "var state = window.__smoketestDomState;" +
+            "if (!state) {" +
+            "  state = window.__smoketestDomState = { token: Math.random().toString(36).slice(2), count: 0 };" +
+            "  if (window.MutationObserver && document.documentElement) {" +
+            "    new MutationObserver(function(mutations) { state.count += mutations.length; })" +
+            "      .observe(document.documentElement, { childList: true, subtree: true, attributes: true, characterData: true });" +
+            "  } else {" +
+            "    state.count = -1;" +
+            "  }" +
+            "}" +
+            "return document.URL + '|' + state.token + '|' + state.count;";
+
+    private final WebDriver m_driver;
+    private String m_version;
+    private Document m_document;
+
+    private final AtomicLong m_hits = new AtomicLong();
+    private final AtomicLong m_misses = new AtomicLong();
+
+    public DomSnapshotCache(final WebDriver driver) {
+        m_driver = driver;
+    }
+
+    /**
+     * The parsed page, re-fetched only if the page has changed since the last call.
+     */
+    public synchronized Document getDocument() {
+        // read the version *before* the source, so a change in between just means we fetch again next time
+        final String version = getVersion();
+        if (version != null && version.equals(m_version) && m_document != null) {
+            m_hits.incrementAndGet();
+            return m_document;
+        }
+        m_misses.incrementAndGet();
+        LOG.trace("DOM snapshot is stale ({} -> {}), fetching page source.", m_version, version);
+        m_document = Jsoup.parse(m_driver.getPageSource(), m_driver.getCurrentUrl());
+        m_version = version;
+        return m_document;
+    }
+
+    /**
+     * Drop the current snapshot, ie after doing something the mutation counter can't see.
+     */
+    public synchronized void invalidate() {
+        m_version = null;
+        m_document = null;
+    }
+
+    public Elements select(final String css) {
+        return getDocument().select(css);
+    }
+
+    public int count(final String css) {
+        return select(css).size();
+    }
+
+    /**
+     * The text of the first element matching the selector, or <code>null</code> if none match.
+     */
+    public String getText(final String css) {
+        final Element element = select(css).first();
+        return element == null? null : element.text();
+    }
+
+    /**
+     * The text of every element matching the selector, in document order.
+     */
+    public List<String> getTexts(final String css) {
+        final List<String> texts = new ArrayList<>();
+        for (final Element element : select(css)) {
+            texts.add(element.text());
+        }
+        return texts;
+    }
+
+    /**
+     * The given attribute of the first element matching the selector, or <code>null</code>
+     * if no element matches or it doesn't have the attribute.
+     */
+    public String getAttribute(final String css, final String attribute) {
+        final Element element = select(css).first();
+        return element == null || !element.hasAttr(attribute)? null : element.attr(attribute);
+    }
+
+    public long getHits() {
+        return m_hits.get();
+    }
+
+    public long getMisses() {
+        return m_misses.get();
+    }
+
+    /**
+     * Identifies the current version of the page, or <code>null</code> if it can't be tracked.
+     */
+    private String getVersion() {
+        if (!(m_driver instanceof JavascriptExecutor)) {
+            return null;
+        }
+        try {
+            final Object version = ((JavascriptExecutor)m_driver).executeScript(VERSION_SCRIPT);
+            if (version == null || version.toString().endsWith("|-1")) {
+                return null;
+            }
+            return version.toString();
+        } catch (final WebDriverException e) {
+            LOG.debug("Unable to read DOM version.", e);
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DomSnapshotCache [hits=" + m_hits + ", misses=" + m_misses + "]";
+    }
+}
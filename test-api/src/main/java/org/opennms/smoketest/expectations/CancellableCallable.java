@@ -0,0 +1,12 @@
+package org.opennms.smoketest.expectations;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A task that checks the given flag and stops early once it has been cancelled.
+ * WebDriver calls don't reliably respond to interrupts, so this is how
+ * cancelling a task actually stops it.
+ */
+public interface CancellableCallable<T> {
+    T call(AtomicBoolean cancelled) throws Exception;
+}
@@ -1,29 +1,40 @@
 package org.opennms.smoketest.expectations;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.jsoup.Jsoup;
+import org.jsoup.helper.W3CDom;
+import org.jsoup.nodes.Element;
 import org.opennms.smoketest.OpenNMSSeleniumTestCase;
+import org.opennms.smoketest.http.HtmlPageClient;
+import org.opennms.smoketest.wait.BackoffWait;
+import org.opennms.smoketest.wait.Poller;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.Wait;
-import org.openqa.selenium.support.ui.WebDriverWait;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
 
 public class Expectation {
     private static final Logger LOG = LoggerFactory.getLogger(Expectation.class);
-    final ExecutorService m_executor = Executors.newFixedThreadPool(5);
 
     public static enum Type {
         OR,
@@ -35,15 +46,42 @@ public class Expectation {
     private List<String> m_textPresent = new ArrayList<>();
     private Long m_waitTime;
     private TimeUnit m_waitUnits;
+    private final Map<String, Long> m_matchTimes = new ConcurrentHashMap<>();
+    private boolean m_overHttp = false;
+    private String m_startUrl;
 
     public Expectation(final String target) {
         m_target = target;
     }
 
+    public String getTarget() {
+        return m_target;
+    }
+
+    /**
+     * The page to start from when this expectation is run on its own (ie, by
+     * the {@link ExpectationCrawler}), or <code>null</code> to use the crawl's default.
+     */
+    public void setStartUrl(final String startUrl) {
+        m_startUrl = startUrl;
+    }
+
+    public String getStartUrl() {
+        return m_startUrl;
+    }
+
+    public Expectation.Type getMatchType() {
+        return m_matchType;
+    }
+
     public void setMatchType(final Expectation.Type type) {
         m_matchType = type;
     }
 
+    public List<String> getTextPresent() {
+        return Collections.unmodifiableList(m_textPresent);
+    }
+
     public void setTextPresent(final List<String> textPresent) {
         if (textPresent != m_textPresent) {
             m_textPresent.clear();
@@ -60,8 +98,44 @@ public class Expectation {
         m_waitUnits = units;
     }
 
+    /**
+     * Check this expectation with a plain HTTP client instead of the browser.
+     * Only use this for server-rendered pages that don't need JavaScript.
+     *
+     * An over-HTTP expectation starts from its own start URL (the front page
+     * if none is set) rather than the browser's current page, and never moves
+     * the browser, so the browser is not needed (or started) to check it.
+     */
+    public void setOverHttp(final boolean overHttp) {
+        m_overHttp = overHttp;
+    }
+
+    public boolean isOverHttp() {
+        return m_overHttp;
+    }
+
+    /**
+     * The absolute start URL, resolving a relative one against the given default.
+     */
+    public String getStartUrl(final String defaultStartUrl) {
+        if (m_startUrl == null) {
+            return defaultStartUrl;
+        }
+        return URI.create(defaultStartUrl).resolve(m_startUrl).toString();
+    }
+
+    /**
+     * Check this expectation in the browser, starting from its current page.
+     * Over-HTTP expectations are checked from their start URL instead, without
+     * touching the browser; see {@link #setOverHttp(boolean)}.
+     */
     public void check(final WebDriver webdriver) throws Exception {
-        final Wait<WebDriver> wait = new WebDriverWait(webdriver, TimeUnit.SECONDS.convert(OpenNMSSeleniumTestCase.LOAD_TIMEOUT, TimeUnit.MILLISECONDS));
+        if (m_overHttp) {
+            check(new HtmlPageClient(OpenNMSSeleniumTestCase.getHttpClient(), getStartUrl(OpenNMSSeleniumTestCase.BASE_URL + "opennms/")));
+            return;
+        }
+
+        final Wait<WebDriver> wait = new BackoffWait(webdriver, OpenNMSSeleniumTestCase.LOAD_TIMEOUT);
         
         final WebElement element;
         if (m_target.startsWith("link=")) {
@@ -84,43 +158,140 @@ public class Expectation {
             Thread.sleep(m_waitUnits.toMillis(m_waitTime));
         }
 
-        final CompletionService<Boolean> completionService = new ExecutorCompletionService<>(m_executor);
-        final List<Future<Boolean>> futures = Collections.synchronizedList(new ArrayList<Future<Boolean>>());
+        final Future<Boolean> future = ExpectationExecutor.submit(new CancellableCallable<Boolean>() {
+            @Override public Boolean call(final AtomicBoolean cancelled) throws Exception {
+                return matchText(webdriver, cancelled);
+            }
+        });
+        final boolean matched;
+        try {
+            matched = future.get(OpenNMSSeleniumTestCase.LOAD_TIMEOUT + ExpectationExecutor.LEAK_GRACE_PERIOD, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            throw new ExpectationFailed(this, "timed out");
+        } finally {
+            // make sure the match loop stops, however we got here
+            future.cancel(true);
+        }
+        if (!matched) {
+            if (m_matchType == Type.AND) {
+                throw new ExpectationFailed(this, "isTextPresent &= " + m_textPresent);
+            }
+            // we never matched any of the strings
+            throw new ExpectationFailed(this);
+        }
+    }
 
-        for (final String tp : m_textPresent) {
-            futures.add(completionService.submit(new Callable<Boolean>() {
-                @Override public Boolean call() throws Exception {
-                    return wait.until(pageContainsText(tp));
-                }
-            }));
+    /**
+     * Check this expectation without a browser: find the target link on the
+     * client's current page, fetch the page it points to, and match the text
+     * on that page.  The client is left on the new page, so checks can be chained.
+     */
+    public void check(final HtmlPageClient client) throws Exception {
+        final String href = findLink(client.getDocument(), client.getCurrentUrl());
+        if (href == null) {
+            throw new ExpectationFailed(this, "no link matching target on " + client.getCurrentUrl());
         }
+        LOG.debug("following link: {}", href);
+        final long start = System.currentTimeMillis();
+        final org.jsoup.nodes.Document page = client.open(href);
 
-        if (m_matchType == Type.OR) {
-            while (futures.size() > 0) {
-                final Future<Boolean> future = completionService.take();
-                futures.remove(future);
-                if (future.get() == true) {
-                    for (final Future<Boolean> f : futures) {
-                        f.cancel(true);
-                    }
-                    // we passed, exit the matching
-                    return;
-                }
+        if (m_textPresent.size() == 0) {
+            return;
+        }
+
+        final MultiStringMatcher matcher = new MultiStringMatcher(m_textPresent);
+        final boolean[] found = new boolean[matcher.size()];
+        final int needed = m_matchType == Type.AND? matcher.size() : 1;
+        final int count = matcher.scan(page.text(), found, needed);
+        final long elapsed = System.currentTimeMillis() - start;
+        m_matchTimes.clear();
+        for (int i = 0; i < found.length; i++) {
+            if (found[i]) {
+                m_matchTimes.put(matcher.getPatterns().get(i), elapsed);
+            }
+        }
+        if (count < needed) {
+            if (m_matchType == Type.AND) {
+                throw new ExpectationFailed(this, "isTextPresent &= " + m_textPresent);
             }
-            // we never received a true value
             throw new ExpectationFailed(this);
-        } else if (m_matchType == Type.AND) {
-            while (futures.size() > 0) {
-                final Future<Boolean> future = completionService.take();
-                futures.remove(future);
-                if (future.get() == false) {
-                    for (final Future<Boolean> f : futures) {
-                        f.cancel(true);
+        }
+    }
+
+    /**
+     * Resolve the target (<code>link=</code>, <code>css=</code>, or XPath) against
+     * a parsed page, and return the absolute URL it links to.
+     */
+    private String findLink(final org.jsoup.nodes.Document page, final String pageUrl) throws XPathExpressionException {
+        if (m_target.startsWith("link=")) {
+            final String target = m_target.replaceFirst("link=", "");
+            for (final Element a : page.select("a[href]")) {
+                if (target.equals(a.text().trim())) {
+                    return a.absUrl("href");
+                }
+            }
+            return null;
+        } else if (m_target.startsWith("css=")) {
+            final Element el = page.select(m_target.replaceFirst("css=", "")).first();
+            return el == null || !el.hasAttr("href")? null : el.absUrl("href");
+        } else {
+            final Document dom = new W3CDom().fromJsoup(page);
+            final Object node = XPathFactory.newInstance().newXPath().evaluate(m_target, dom, XPathConstants.NODE);
+            if (node instanceof org.w3c.dom.Element && ((org.w3c.dom.Element)node).hasAttribute("href")) {
+                return URI.create(pageUrl).resolve(((org.w3c.dom.Element)node).getAttribute("href").trim()).toString();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Poll the page until the expected text is present, checking all of the
+     * expected strings against a single snapshot of the page text each time.
+     */
+    private boolean matchText(final WebDriver webdriver, final AtomicBoolean cancelled) {
+        final MultiStringMatcher matcher = new MultiStringMatcher(m_textPresent);
+        final boolean[] found = new boolean[matcher.size()];
+        final int needed = m_matchType == Type.AND? matcher.size() : 1;
+        final long start = System.currentTimeMillis();
+        m_matchTimes.clear();
+
+        final Boolean matched = new Poller("Expectation.matchText", OpenNMSSeleniumTestCase.LOAD_TIMEOUT).cancelledBy(cancelled).untilQuietly(new Callable<Boolean>() {
+            @Override public Boolean call() throws Exception {
+                final String text = getPageText(webdriver);
+                final boolean[] before = found.clone();
+                final int count = matcher.scan(text, found, needed);
+                final long elapsed = System.currentTimeMillis() - start;
+                for (int i = 0; i < found.length; i++) {
+                    if (found[i] && !before[i]) {
+                        LOG.debug("matched '{}' after {}ms", matcher.getPatterns().get(i), elapsed);
+                        m_matchTimes.put(matcher.getPatterns().get(i), elapsed);
                     }
-                    throw new ExpectationFailed(this, "isTextPresent &= " + m_textPresent);
                 }
+                return count >= needed;
+            }
+        });
+        return matched != null;
+    }
+
+    /**
+     * The text content of the whole document, the same text XPath's <code>contains(., ...)</code> sees.
+     */
+    private static String getPageText(final WebDriver webdriver) {
+        if (webdriver instanceof JavascriptExecutor) {
+            final Object text = ((JavascriptExecutor)webdriver).executeScript("return document.documentElement.textContent;");
+            if (text != null) {
+                return text.toString();
             }
         }
+        return Jsoup.parse(webdriver.getPageSource()).text();
+    }
+
+    /**
+     * The strings that were found on the page during the last check, and how
+     * long (in milliseconds) after matching started that each one was found.
+     */
+    public Map<String, Long> getMatchTimes() {
+        return Collections.unmodifiableMap(m_matchTimes);
     }
 
     private ExpectedCondition<WebElement> visibilityOfElementLocated(final By locator) {
@@ -135,20 +306,8 @@ public class Expectation {
         };
     }
 
-    private ExpectedCondition<Boolean> pageContainsText(final String text) {
-        final String escapedText = text.replace("\'", "\\\'");
-        return new ExpectedCondition<Boolean>() {
-            @Override public Boolean apply(final WebDriver driver) {
-                final String xpathExpression = "//*[contains(., '" + escapedText + "')]";
-                LOG.debug("XPath expression: {}", xpathExpression);
-                final WebElement element = driver.findElement(By.xpath(xpathExpression));
-                return element != null;
-            }
-        };
-    }
-
     @Override
     public String toString() {
-        return "Expectation [target=" + m_target + ", matchType=" + m_matchType + ", textPresent=" + m_textPresent + "]";
+        return "Expectation [target=" + m_target + ", matchType=" + m_matchType + ", textPresent=" + m_textPresent + ", matched=" + m_matchTimes.keySet() + "]";
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package org.opennms.smoketest.expectations;
 
 import java.util.concurrent.TimeUnit;
 
+import org.opennms.smoketest.http.HtmlPageClient;
 import org.openqa.selenium.WebDriver;
 
 
@@ -27,6 +28,24 @@ public class ExpectationBuilder {
         return this;
     }
 
+    /**
+     * Check this expectation over plain HTTP rather than in the browser.
+     * Only suitable for server-rendered pages that don't need JavaScript.
+     */
+    public ExpectationBuilder overHttp() {
+        m_expectation.setOverHttp(true);
+        return this;
+    }
+
+    /**
+     * The page the target link is on, when this expectation is run by the
+     * {@link ExpectationCrawler} or checked {@link #overHttp() over HTTP}.
+     */
+    public ExpectationBuilder from(final String startUrl) {
+        m_expectation.setStartUrl(startUrl);
+        return this;
+    }
+
     public ExpectationBuilder waitFor(final long time, final TimeUnit units) {
         m_expectation.setWaitTime(time, units);
         return this;
@@ -43,4 +62,8 @@ public class ExpectationBuilder {
     public void check(final WebDriver webdriver) throws Exception {
         build().check(webdriver);
     }
+
+    public void check(final HtmlPageClient client) throws Exception {
+        build().check(client);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,397 @@
+package org.opennms.smoketest.expectations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.smoketest.OpenNMSSeleniumTestCase;
+import org.opennms.smoketest.OpenNMSTestException;
+import org.opennms.smoketest.http.HtmlPageClient;
+import org.opennms.smoketest.webdriver.AuthenticationCache;
+import org.opennms.smoketest.webdriver.BrowserProfiles;
+import org.opennms.smoketest.webdriver.WebDriverFactory;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs a collection of independent {@link Expectation}s across several
+ * authenticated browser sessions at once.
+ *
+ * Each expectation starts from its own start URL (see {@link ExpectationBuilder#from(String)}),
+ * or the crawl's default, so they can be checked in any order on any driver.
+ * Failed expectations are retried, and the load and match time of every page
+ * is collected into a {@link Report}.
+ */
+public class ExpectationCrawler {
+    private static final Logger LOG = LoggerFactory.getLogger(ExpectationCrawler.class);
+
+    private final WebDriverFactory m_factory;
+    private final AuthenticationCache m_authenticationCache;
+    private final String m_defaultStartUrl;
+    private int m_drivers = Integer.getInteger("org.opennms.smoketest.crawl.drivers", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private int m_retries = Integer.getInteger("org.opennms.smoketest.crawl.retries", 1);
+
+    public ExpectationCrawler(final WebDriverFactory factory, final AuthenticationCache authenticationCache, final String defaultStartUrl) {
+        m_factory = factory;
+        m_authenticationCache = authenticationCache;
+        m_defaultStartUrl = defaultStartUrl;
+    }
+
+    /**
+     * The number of browser sessions to run expectations in.
+     */
+    public ExpectationCrawler withDrivers(final int drivers) {
+        m_drivers = Math.max(1, drivers);
+        return this;
+    }
+
+    /**
+     * How many more times to try an expectation after it fails.
+     */
+    public ExpectationCrawler withRetries(final int retries) {
+        m_retries = Math.max(0, retries);
+        return this;
+    }
+
+    /**
+     * Check all of the expectations, blocking until every one has passed or run out of retries.
+     */
+    public Report crawl(final Collection<Expectation> expectations, final long timeout, final TimeUnit unit) {
+        final BlockingQueue<Expectation> queue = new LinkedBlockingQueue<>(expectations);
+        final Report report = new Report();
+        final int drivers = Math.min(m_drivers, Math.max(1, expectations.size()));
+        final CountDownLatch done = new CountDownLatch(drivers);
+        final ExecutorService executor = Executors.newFixedThreadPool(drivers, new ThreadFactoryBuilder()
+                .setNameFormat("expectation-crawler-%d")
+                .setDaemon(true)
+                .build());
+
+        // each driver matches text on the shared executor; don't let it hold them back
+        ExpectationExecutor.ensureThreads(drivers);
+
+        LOG.info("Crawling {} expectations with {} drivers.", expectations.size(), drivers);
+        final long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < drivers; i++) {
+                executor.execute(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            runWorker(queue, report);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            if (!done.await(timeout, unit)) {
+                throw new OpenNMSTestException("Timed out crawling expectations; " + queue.size() + " were never run.");
+            }
+            // every worker gave up early, so nothing was left to run these
+            Expectation expectation;
+            while ((expectation = queue.poll()) != null) {
+                final Result result = new Result(expectation, expectation.getStartUrl(m_defaultStartUrl), 0);
+                result.m_failure = new ExpectationFailed(expectation, "never run");
+                report.add(result);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenNMSTestException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        report.m_elapsedMillis = System.currentTimeMillis() - start;
+        LOG.info("Crawl finished: {}", report);
+        return report;
+    }
+
+    private void runWorker(final BlockingQueue<Expectation> queue, final Report report) {
+        WebDriver driver = null;
+        try {
+            Expectation expectation;
+            while ((expectation = queue.poll()) != null) {
+                final String startUrl = expectation.getStartUrl(m_defaultStartUrl);
+                if (expectation.isOverHttp()) {
+                    // no browser needed
+                    report.add(checkOverHttp(expectation, startUrl));
+                    continue;
+                }
+                Result result = null;
+                for (int attempt = 1; attempt <= m_retries + 1; attempt++) {
+                    result = new Result(expectation, startUrl, attempt);
+                    if (driver == null) {
+                        try {
+                            driver = startDriver();
+                        } catch (final Exception e) {
+                            // counts as an attempt, so a browser that won't start can't stall the crawl
+                            LOG.warn("Attempt {} of {} failed; unable to start a driver.", attempt, expectation, e);
+                            result.m_failure = e;
+                            continue;
+                        }
+                    }
+                    try {
+                        long now = System.currentTimeMillis();
+                        driver.get(startUrl);
+                        result.m_loadMillis = System.currentTimeMillis() - now;
+
+                        now = System.currentTimeMillis();
+                        expectation.check(driver);
+                        result.m_checkMillis = System.currentTimeMillis() - now;
+                        result.m_matchTimes = expectation.getMatchTimes();
+                        result.m_finalUrl = driver.getCurrentUrl();
+                        break;
+                    } catch (final ExpectationFailed e) {
+                        LOG.debug("Attempt {} of {} failed.", attempt, expectation, e);
+                        result.m_failure = e;
+                    } catch (final Exception e) {
+                        // anything other than a failed match may have left the browser unusable
+                        LOG.warn("Attempt {} of {} failed; replacing driver.", attempt, expectation, e);
+                        result.m_failure = e;
+                        quit(driver);
+                        driver = null;
+                    }
+                }
+                report.add(result);
+            }
+        } finally {
+            quit(driver);
+        }
+    }
+
+    private WebDriver startDriver() {
+        final WebDriver driver = m_factory.createDriver();
+        if (!m_authenticationCache.authenticate(driver)) {
+            quit(driver);
+            throw new OpenNMSTestException("Unable to authenticate crawler driver.");
+        }
+        return driver;
+    }
+
+    private Result checkOverHttp(final Expectation expectation, final String startUrl) {
+        Result result = null;
+        for (int attempt = 1; attempt <= m_retries + 1; attempt++) {
+            result = new Result(expectation, startUrl, attempt);
+            try {
+                final HtmlPageClient client = new HtmlPageClient(OpenNMSSeleniumTestCase.getHttpClient(), startUrl);
+                long now = System.currentTimeMillis();
+                client.getDocument();
+                result.m_loadMillis = System.currentTimeMillis() - now;
+
+                now = System.currentTimeMillis();
+                expectation.check(client);
+                result.m_checkMillis = System.currentTimeMillis() - now;
+                result.m_matchTimes = expectation.getMatchTimes();
+                result.m_finalUrl = client.getCurrentUrl();
+                break;
+            } catch (final Exception e) {
+                LOG.debug("Attempt {} of {} failed.", attempt, expectation, e);
+                result.m_failure = e;
+            }
+        }
+        return result;
+    }
+
+    private static void quit(final WebDriver driver) {
+        if (driver != null) {
+            try {
+                driver.quit();
+            } catch (final WebDriverException e) {
+                LOG.debug("Failed to quit driver.", e);
+            }
+            BrowserProfiles.release(driver);
+        }
+    }
+
+    /**
+     * Read expectations from a site map, one per line, with the fields separated
+     * by tabs (<code>\t</code> below):
+     *
+     * <pre>
+     * # start URL\ttarget\t[and|or]\ttext\ttext...
+     * opennms/index.jsp\tlink=Node List\tor\tNodes
+     * opennms/index.jsp\t//a[text()='Nodes']|//a[text()='Node List']\tNodes
+     * </pre>
+     *
+     * Tabs, unlike <code>|</code>, never show up in XPath or CSS locators, so
+     * unions like the one above don't need escaping.  Start URLs are relative
+     * to the crawl's default start URL.  Blank lines and lines starting with
+     * <code>#</code> are ignored.
+     */
+    public static List<Expectation> readSiteMap(final BufferedReader reader) throws IOException {
+        final List<Expectation> expectations = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final String[] fields = line.split("\\s*\\t\\s*");
+            if (fields.length < 2) {
+                throw new IOException("Line " + lineNumber + ": expected at least a tab-separated start URL and target: " + line);
+            }
+            final ExpectationBuilder builder = new ExpectationBuilder(fields[1]).from(fields[0]);
+            int i = 2;
+            if (fields.length > 2 && ("and".equalsIgnoreCase(fields[2]) || "or".equalsIgnoreCase(fields[2]))) {
+                if ("and".equalsIgnoreCase(fields[2])) {
+                    builder.and();
+                } else {
+                    builder.or();
+                }
+                i++;
+            }
+            for (; i < fields.length; i++) {
+                builder.withText(fields[i]);
+            }
+            expectations.add(builder.build());
+        }
+        return expectations;
+    }
+
+    /**
+     * The outcome of the last attempt at one expectation.
+     */
+    public static final class Result {
+        private final Expectation m_expectation;
+        private final String m_startUrl;
+        private final int m_attempts;
+        private String m_finalUrl;
+        private long m_loadMillis = -1;
+        private long m_checkMillis = -1;
+        private Map<String, Long> m_matchTimes = Collections.emptyMap();
+        private Exception m_failure;
+
+        private Result(final Expectation expectation, final String startUrl, final int attempts) {
+            m_expectation = expectation;
+            m_startUrl = startUrl;
+            m_attempts = attempts;
+        }
+
+        public Expectation getExpectation() {
+            return m_expectation;
+        }
+        public String getStartUrl() {
+            return m_startUrl;
+        }
+        /**
+         * The page the expectation ended up on, if it passed.
+         */
+        public String getFinalUrl() {
+            return m_finalUrl;
+        }
+        public int getAttempts() {
+            return m_attempts;
+        }
+        /**
+         * How long the start page took to load.
+         */
+        public long getLoadMillis() {
+            return m_loadMillis;
+        }
+        /**
+         * How long it took to find and follow the target, and match the text on the new page.
+         */
+        public long getCheckMillis() {
+            return m_checkMillis;
+        }
+        /**
+         * How long it took to match the slowest of the expected strings.
+         */
+        public long getMatchMillis() {
+            return m_matchTimes.isEmpty()? 0 : Collections.max(m_matchTimes.values());
+        }
+        public Exception getFailure() {
+            return m_failure;
+        }
+        public boolean isPassed() {
+            return m_failure == null;
+        }
+    }
+
+    public static final class Report {
+        private final List<Result> m_results = Collections.synchronizedList(new ArrayList<Result>());
+        private volatile long m_elapsedMillis;
+
+        private void add(final Result result) {
+            m_results.add(result);
+        }
+
+        public List<Result> getResults() {
+            synchronized (m_results) {
+                return new ArrayList<>(m_results);
+            }
+        }
+
+        public List<Result> getFailures() {
+            final List<Result> failures = new ArrayList<>();
+            for (final Result result : getResults()) {
+                if (!result.isPassed()) {
+                    failures.add(result);
+                }
+            }
+            return failures;
+        }
+
+        public long getElapsedMillis() {
+            return m_elapsedMillis;
+        }
+
+        /**
+         * Throw an {@link ExpectationFailed} for the first expectation that never passed.
+         */
+        public void assertPassed() throws ExpectationFailed {
+            final List<Result> failures = getFailures();
+            if (!failures.isEmpty()) {
+                final Result first = failures.get(0);
+                throw new ExpectationFailed(first.getExpectation(), failures.size() + " of " + m_results.size() + " expectations failed, first: " + first.getFailure());
+            }
+        }
+
+        /**
+         * Write the per-page timings, slowest first.
+         */
+        public void write(final Path to) {
+            final List<Result> results = getResults();
+            Collections.sort(results, new Comparator<Result>() {
+                @Override public int compare(final Result a, final Result b) {
+                    return Long.compare(b.getLoadMillis() + b.getCheckMillis(), a.getLoadMillis() + a.getCheckMillis());
+                }
+            });
+            final StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%-6s %8s %10s %10s %10s  %-60s %s%n", "result", "attempts", "load(ms)", "check(ms)", "match(ms)", "start", "target"));
+            for (final Result result : results) {
+                sb.append(String.format("%-6s %8d %10d %10d %10d  %-60s %s%n", result.isPassed()? "pass" : "FAIL", result.getAttempts(), result.getLoadMillis(), result.getCheckMillis(), result.getMatchMillis(), result.getStartUrl(), result.getExpectation().getTarget()));
+            }
+            sb.append(String.format("%n%d expectations, %d failed, %dms elapsed%n", results.size(), getFailures().size(), m_elapsedMillis));
+            try {
+                Files.createDirectories(to.getParent());
+                Files.write(to, sb.toString().getBytes(StandardCharsets.UTF_8));
+            } catch (final IOException e) {
+                LOG.warn("Failed to write crawl report to {}", to, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Report [expectations=" + m_results.size() + ", failures=" + getFailures().size() + ", elapsed=" + m_elapsedMillis + "ms]";
+        }
+    }
+}
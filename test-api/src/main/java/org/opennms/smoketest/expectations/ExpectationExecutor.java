@@ -0,0 +1,156 @@
+package org.opennms.smoketest.expectations;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The executor shared by all {@link Expectation}s.  It has a fixed number of
+ * daemon threads (<code>org.opennms.smoketest.expectations.threads</code>, grown
+ * by {@link #ensureThreads(int)} for parallel crawls) and a bounded queue; when
+ * the queue is full, tasks run on the submitting thread.
+ *
+ * Cancelling a task both interrupts it and sets its cancellation flag.  A task
+ * that is still running {@link #LEAK_GRACE_PERIOD} ms after being cancelled is
+ * counted as leaked.
+ */
+public abstract class ExpectationExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(ExpectationExecutor.class);
+
+    public static final long LEAK_GRACE_PERIOD = Long.getLong("org.opennms.smoketest.expectations.leak-grace-period", 5000l);
+
+    private static final int s_threads = Integer.getInteger("org.opennms.smoketest.expectations.threads", 4);
+    private static final ThreadPoolExecutor s_executor = new ThreadPoolExecutor(s_threads, s_threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(100), new ThreadFactory() {
+        private final AtomicInteger m_count = new AtomicInteger();
+        @Override public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "expectation-" + m_count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private static final AtomicInteger s_active = new AtomicInteger();
+    private static final AtomicLong s_submitted = new AtomicLong();
+    private static final AtomicLong s_cancelled = new AtomicLong();
+    // cancelled tasks that are still running, and when they were cancelled
+    private static final Map<TrackedTask<?>, Long> s_cancelledRunning = new ConcurrentHashMap<>();
+
+    static {
+        s_executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final class TrackedTask<T> extends FutureTask<T> {
+        private final AtomicBoolean m_cancelled;
+        private volatile boolean m_running = false;
+
+        private TrackedTask(final Callable<T> callable, final AtomicBoolean cancelled) {
+            super(callable);
+            m_cancelled = cancelled;
+        }
+
+        @Override
+        public void run() {
+            s_active.incrementAndGet();
+            m_running = true;
+            try {
+                super.run();
+            } finally {
+                m_running = false;
+                s_active.decrementAndGet();
+                s_cancelledRunning.remove(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            m_cancelled.set(true);
+            final boolean ret = super.cancel(mayInterruptIfRunning);
+            if (ret) {
+                s_cancelled.incrementAndGet();
+                if (m_running) {
+                    s_cancelledRunning.put(this, System.currentTimeMillis());
+                    // run() may have finished (and removed us) between the check and the put
+                    if (!m_running) {
+                        s_cancelledRunning.remove(this);
+                    }
+                }
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Make sure at least the given number of tasks can run at once, ie one per
+     * browser when expectations are checked in parallel.
+     */
+    public static void ensureThreads(final int threads) {
+        synchronized (s_executor) {
+            if (threads > s_executor.getMaximumPoolSize()) {
+                LOG.debug("Growing expectation executor to {} threads.", threads);
+                // raise the maximum first; the core size may not exceed it
+                s_executor.setMaximumPoolSize(threads);
+                s_executor.setCorePoolSize(threads);
+            }
+        }
+    }
+
+    public static <T> Future<T> submit(final CancellableCallable<T> task) {
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final TrackedTask<T> future = new TrackedTask<>(new Callable<T>() {
+            @Override public T call() throws Exception {
+                return task.call(cancelled);
+            }
+        }, cancelled);
+        s_submitted.incrementAndGet();
+        s_executor.execute(future);
+        return future;
+    }
+
+    /**
+     * The number of tasks currently running.
+     */
+    public static int getActiveCount() {
+        return s_active.get();
+    }
+
+    public static long getSubmittedCount() {
+        return s_submitted.get();
+    }
+
+    public static long getCancelledCount() {
+        return s_cancelled.get();
+    }
+
+    /**
+     * The number of cancelled tasks that are still running after the grace period.
+     */
+    public static int getLeakedCount() {
+        final long cutoff = System.currentTimeMillis() - LEAK_GRACE_PERIOD;
+        int leaked = 0;
+        for (final Map.Entry<TrackedTask<?>, Long> entry : s_cancelledRunning.entrySet()) {
+            if (entry.getValue() < cutoff) {
+                leaked++;
+            }
+        }
+        if (leaked > 0) {
+            LOG.warn("{} cancelled expectation tasks are still running.", leaked);
+        }
+        return leaked;
+    }
+
+    public static String getStatistics() {
+        return "ExpectationExecutor [threads=" + s_executor.getMaximumPoolSize() + ", active=" + getActiveCount() + ", submitted=" + getSubmittedCount() + ", cancelled=" + getCancelledCount() + ", leaked=" + getLeakedCount() + "]";
+    }
+}
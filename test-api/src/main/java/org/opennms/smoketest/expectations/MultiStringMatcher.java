@@ -0,0 +1,174 @@
+package org.opennms.smoketest.expectations;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds any number of strings in a text in a single linear pass, using an
+ * Aho-Corasick automaton.
+ */
+public class MultiStringMatcher {
+    private static final int ROOT = 0;
+
+    private final List<String> m_patterns;
+    // transitions, keyed by (state << 16 | character)
+    private final Map<Long, Integer> m_goto = new HashMap<>();
+    private final List<Integer> m_fail = new ArrayList<>();
+    private final List<int[]> m_output = new ArrayList<>();
+
+    public MultiStringMatcher(final List<String> patterns) {
+        m_patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+        newState();
+        for (int i = 0; i < m_patterns.size(); i++) {
+            addPattern(m_patterns.get(i), i);
+        }
+        buildFailureLinks();
+    }
+
+    public List<String> getPatterns() {
+        return m_patterns;
+    }
+
+    public int size() {
+        return m_patterns.size();
+    }
+
+    /**
+     * Scan the text, marking each pattern that is found in <code>found</code>.
+     * Patterns that are already marked are not reported again.
+     *
+     * @param text the text to search
+     * @param found one flag per pattern, in the order they were given
+     * @param stopAfter stop scanning once this many patterns have been found in total
+     * @return the number of patterns found in total
+     */
+    public int scan(final CharSequence text, final boolean[] found, final int stopAfter) {
+        int total = 0;
+        for (final boolean f : found) {
+            if (f) {
+                total++;
+            }
+        }
+        // empty patterns match anything
+        for (final int pattern : m_output.get(ROOT)) {
+            if (!found[pattern]) {
+                found[pattern] = true;
+                total++;
+            }
+        }
+        if (total >= stopAfter) {
+            return total;
+        }
+
+        int state = ROOT;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            Integer next = m_goto.get(key(state, c));
+            while (next == null && state != ROOT) {
+                state = m_fail.get(state);
+                next = m_goto.get(key(state, c));
+            }
+            state = next == null? ROOT : next;
+            for (final int pattern : m_output.get(state)) {
+                if (!found[pattern]) {
+                    found[pattern] = true;
+                    if (++total >= stopAfter) {
+                        return total;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    private int newState() {
+        m_fail.add(ROOT);
+        m_output.add(new int[0]);
+        return m_fail.size() - 1;
+    }
+
+    private void addPattern(final String pattern, final int index) {
+        int state = ROOT;
+        for (int i = 0; i < pattern.length(); i++) {
+            final long key = key(state, pattern.charAt(i));
+            Integer next = m_goto.get(key);
+            if (next == null) {
+                next = newState();
+                m_goto.put(key, next);
+            }
+            state = next;
+        }
+        m_output.set(state, append(m_output.get(state), index));
+    }
+
+    private void buildFailureLinks() {
+        // group the transitions by their source state so we can walk the trie breadth-first
+        final Map<Integer, List<Long>> children = new HashMap<>();
+        for (final Long key : m_goto.keySet()) {
+            final int from = (int)(key >>> 16);
+            List<Long> list = children.get(from);
+            if (list == null) {
+                list = new ArrayList<>();
+                children.put(from, list);
+            }
+            list.add(key);
+        }
+
+        final Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(ROOT);
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            final List<Long> transitions = children.get(state);
+            if (transitions == null) {
+                continue;
+            }
+            for (final Long key : transitions) {
+                final char c = (char)(key & 0xFFFF);
+                final int child = m_goto.get(key);
+                if (state == ROOT) {
+                    m_fail.set(child, ROOT);
+                } else {
+                    int fail = m_fail.get(state);
+                    Integer next = m_goto.get(key(fail, c));
+                    while (next == null && fail != ROOT) {
+                        fail = m_fail.get(fail);
+                        next = m_goto.get(key(fail, c));
+                    }
+                    m_fail.set(child, next == null? ROOT : next);
+                }
+                // a match at the failure state is also a match here
+                final int[] inherited = m_output.get(m_fail.get(child));
+                if (inherited.length > 0) {
+                    int[] output = m_output.get(child);
+                    for (final int pattern : inherited) {
+                        output = append(output, pattern);
+                    }
+                    m_output.set(child, output);
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private static long key(final int state, final char c) {
+        return ((long)state << 16) | c;
+    }
+
+    private static int[] append(final int[] array, final int value) {
+        for (final int existing : array) {
+            if (existing == value) {
+                return array;
+            }
+        }
+        final int[] ret = new int[array.length + 1];
+        System.arraycopy(array, 0, ret, 0, array.length);
+        ret[array.length] = value;
+        return ret;
+    }
+}
@@ -0,0 +1,89 @@
+package org.opennms.smoketest.http;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.opennms.smoketest.OpenNMSTestException;
+import org.opennms.smoketest.ResponseData;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs requests against the {@link SharedHttpClient} without blocking the
+ * caller, so independent REST calls can be issued together and joined on.
+ */
+public class AsyncRestClient {
+    private final SharedHttpClient m_client;
+    private final ListeningExecutorService m_executor;
+
+    public AsyncRestClient(final SharedHttpClient client, final int threads) {
+        m_client = client;
+        m_executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("rest-async-%d")
+                .setDaemon(true)
+                .build()));
+    }
+
+    public ListenableFuture<ResponseData> execute(final HttpRequestBase request) {
+        return m_executor.submit(new Callable<ResponseData>() {
+            @Override public ResponseData call() throws Exception {
+                return m_client.execute(request);
+            }
+        });
+    }
+
+    /**
+     * Run an arbitrary (usually multi-request) task on the REST executor.  The
+     * task must not wait on other futures from this client: the pool is fixed,
+     * so enough such tasks would wait on requests that never get a thread.
+     */
+    public <T> ListenableFuture<T> submit(final Callable<T> callable) {
+        return m_executor.submit(callable);
+    }
+
+    /**
+     * Combine the given futures into one which completes when all of them
+     * have, or fails as soon as any of them fails.
+     */
+    public static <T> ListenableFuture<List<T>> allOf(final Iterable<? extends ListenableFuture<? extends T>> futures) {
+        return Futures.allAsList(futures);
+    }
+
+    /**
+     * Block until all of the given futures complete, and return their results in order.
+     * Failures are rethrown as they were thrown by the request.
+     */
+    public static <T> List<T> join(final Iterable<? extends ListenableFuture<? extends T>> futures, final long timeout, final TimeUnit unit) throws IOException {
+        final ListenableFuture<List<T>> all = allOf(futures);
+        try {
+            return all.get(timeout, unit);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            all.cancel(true);
+            throw new OpenNMSTestException(e);
+        } catch (final TimeoutException e) {
+            all.cancel(true);
+            throw new OpenNMSTestException("Timed out waiting for " + futures, e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new OpenNMSTestException(cause);
+        }
+    }
+}
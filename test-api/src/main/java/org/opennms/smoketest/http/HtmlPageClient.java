@@ -0,0 +1,75 @@
+package org.opennms.smoketest.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.util.EntityUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * A minimal, browser-less "browser" for server-rendered pages: it fetches
+ * pages with the authenticated {@link SharedHttpClient}, parses them with
+ * Jsoup, and remembers the current page so links can be followed from it.
+ *
+ * It does not run JavaScript, so it is only suitable for pages that are
+ * complete when the server sends them.
+ */
+public class HtmlPageClient {
+    private final SharedHttpClient m_client;
+    private String m_currentUrl;
+    private Document m_document;
+
+    public HtmlPageClient(final SharedHttpClient client, final String startUrl) {
+        m_client = client;
+        m_currentUrl = startUrl;
+    }
+
+    public String getCurrentUrl() {
+        return m_currentUrl;
+    }
+
+    /**
+     * The current page, fetching it if it has not been loaded yet.
+     */
+    public Document getDocument() throws IOException {
+        if (m_document == null) {
+            open(m_currentUrl);
+        }
+        return m_document;
+    }
+
+    /**
+     * Load the given URL (relative URLs are resolved against the current page)
+     * and make it the current page.
+     */
+    public Document open(final String url) throws IOException {
+        final URI uri = m_currentUrl == null? URI.create(url) : URI.create(m_currentUrl).resolve(url);
+        final HttpClientContext context = HttpClientContext.create();
+        final String body = m_client.execute(new HttpGet(uri), new ResponseHandler<String>() {
+            @Override
+            public String handleResponse(final HttpResponse response) throws ClientProtocolException, IOException {
+                final int status = response.getStatusLine().getStatusCode();
+                final HttpEntity entity = response.getEntity();
+                if (status < 200 || status >= 300 || entity == null) {
+                    throw new ClientProtocolException("Unexpected response status " + status + " for " + uri);
+                }
+                return EntityUtils.toString(entity, StandardCharsets.UTF_8);
+            }
+        }, context);
+
+        // if we were redirected, links on the page are relative to where we ended up
+        final List<URI> redirects = context.getRedirectLocations();
+        m_currentUrl = (redirects == null || redirects.isEmpty()? uri : redirects.get(redirects.size() - 1)).toString();
+        m_document = Jsoup.parse(body, m_currentUrl);
+        return m_document;
+    }
+}
@@ -0,0 +1,181 @@
+package org.opennms.smoketest.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.opennms.smoketest.ResponseData;
+import org.opennms.smoketest.timing.StepTimings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single keep-alive HTTP client, shared by all REST calls in a test run.
+ *
+ * Connections are pooled and kept open between requests, and basic auth is
+ * sent preemptively so requests don't need an extra round trip for the
+ * authentication challenge.
+ */
+public class SharedHttpClient {
+    private static final Logger LOG = LoggerFactory.getLogger(SharedHttpClient.class);
+
+    /**
+     * Reads the response into a {@link ResponseData}.  A status of -1 means the
+     * request failed, or returned a status we don't expect.
+     */
+    public static final ResponseHandler<ResponseData> RESPONSE_DATA_HANDLER = new ResponseHandler<ResponseData>() {
+        @Override
+        public ResponseData handleResponse(final HttpResponse response) throws ClientProtocolException, IOException {
+            try {
+                final int status = response.getStatusLine().getStatusCode();
+                String responseText = null;
+                // 400 because we return that if you try to delete
+                // something that is already deleted
+                // 404 because it's OK if it's already not there
+                if (status >= 200 && status < 300 || status == 400 || status == 404) {
+                    final HttpEntity entity = response.getEntity();
+                    if (entity != null) {
+                        responseText = EntityUtils.toString(entity);
+                        EntityUtils.consume(entity);
+                    }
+                    return new ResponseData(status, responseText);
+                } else {
+                    throw new ClientProtocolException("Unexpected response status: " + status);
+                }
+            } catch (final Exception e) {
+                LOG.warn("Unhandled exception", e);
+                return new ResponseData(-1, null);
+            }
+        }
+    };
+
+    private final CloseableHttpClient m_client;
+    private final PoolingHttpClientConnectionManager m_connectionManager;
+    private final AuthCache m_authCache = new BasicAuthCache();
+
+    private final AtomicLong m_requests = new AtomicLong();
+    private final AtomicLong m_connections = new AtomicLong();
+
+    public SharedHttpClient(final String username, final String password, final int maxPerRoute, final int maxTotal) {
+        final HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connectionFactory = new HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection>() {
+            @Override
+            public ManagedHttpClientConnection create(final HttpRoute route, final ConnectionConfig config) {
+                m_connections.incrementAndGet();
+                return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+            }
+        };
+        m_connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                .build(), connectionFactory);
+        m_connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        m_connectionManager.setMaxTotal(maxTotal);
+        // Jetty closes idle connections on its own, so re-check any that have been sitting for a while
+        m_connectionManager.setValidateAfterInactivity(2000);
+
+        final CredentialsProvider credsProvider = new BasicCredentialsProvider();
+        credsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
+
+        m_client = HttpClients.custom()
+                .setConnectionManager(m_connectionManager)
+                .setDefaultCredentialsProvider(credsProvider)
+                .setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+                    @Override
+                    public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+                        final long duration = super.getKeepAliveDuration(response, context);
+                        return duration < 0? TimeUnit.SECONDS.toMillis(30) : duration;
+                    }
+                })
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .disableConnectionState()
+                .build();
+
+        Runtime.getRuntime().addShutdownHook(new Thread("shared-http-client-shutdown") {
+            @Override public void run() {
+                LOG.info("Shutting down {}", SharedHttpClient.this);
+                try {
+                    m_client.close();
+                } catch (final IOException e) {
+                    LOG.debug("Failed to close HTTP client.", e);
+                }
+            }
+        });
+    }
+
+    public ResponseData execute(final HttpRequestBase request) throws ClientProtocolException, IOException {
+        return execute(request, RESPONSE_DATA_HANDLER);
+    }
+
+    public <T> T execute(final HttpRequestBase request, final ResponseHandler<T> handler) throws ClientProtocolException, IOException {
+        return execute(request, handler, HttpClientContext.create());
+    }
+
+    /**
+     * Execute the request with the given context, ie to inspect redirects afterwards.
+     */
+    public <T> T execute(final HttpRequestBase request, final ResponseHandler<T> handler, final HttpClientContext context) throws ClientProtocolException, IOException {
+        final URI uri = request.getURI();
+        final HttpHost targetHost = new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme());
+        if (m_authCache.get(targetHost) == null) {
+            // Generate BASIC scheme object and add it to the auth cache so credentials are sent up front
+            m_authCache.put(targetHost, new BasicScheme());
+        }
+
+        context.setAuthCache(m_authCache);
+
+        m_requests.incrementAndGet();
+        try (final StepTimings.Step step = StepTimings.start("http", request.getMethod() + " " + uri.getPath())) {
+            return m_client.execute(targetHost, request, handler, context);
+        }
+    }
+
+    public long getRequestCount() {
+        return m_requests.get();
+    }
+
+    public long getConnectionCount() {
+        return m_connections.get();
+    }
+
+    /**
+     * The number of requests that were sent over an already-open connection.
+     */
+    public long getReusedConnectionCount() {
+        return Math.max(0, m_requests.get() - m_connections.get());
+    }
+
+    @Override
+    public String toString() {
+        return "SharedHttpClient [requests=" + m_requests + ", connections=" + m_connections + ", reused=" + getReusedConnectionCount() + ", pool=" + m_connectionManager.getTotalStats() + "]";
+    }
+}
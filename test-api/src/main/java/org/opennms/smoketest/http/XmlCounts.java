@@ -0,0 +1,119 @@
+package org.opennms.smoketest.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.ResponseHandler;
+
+/**
+ * Count-only readers for OpenNMS REST responses.  The body is read with StAX
+ * straight off the connection, so the document is never held in memory, and
+ * reading stops as soon as the count is known.
+ */
+public abstract class XmlCounts {
+    private static final XMLInputFactory s_inputFactory = XMLInputFactory.newInstance();
+    static {
+        s_inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        s_inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Reads the <code>totalCount</code> attribute of the root element, ie from <code>/rest/nodes</code>.
+     */
+    public static final ResponseHandler<Long> TOTAL_COUNT_HANDLER = new ResponseHandler<Long>() {
+        @Override
+        public Long handleResponse(final HttpResponse response) throws ClientProtocolException, IOException {
+            final int status = response.getStatusLine().getStatusCode();
+            final HttpEntity entity = response.getEntity();
+            if (status < 200 || status >= 300 || entity == null) {
+                throw new ClientProtocolException("Unexpected response status: " + status);
+            }
+            try (final InputStream is = entity.getContent()) {
+                return readTotalCount(is);
+            }
+        }
+    };
+
+    /**
+     * Counts the <code>&lt;node&gt;</code> children of the root element, ie from
+     * <code>/rest/requisitions/{foreignSource}</code>.  A missing or unreadable
+     * requisition has no nodes.
+     */
+    public static final ResponseHandler<Long> NODE_CHILDREN_HANDLER = new ResponseHandler<Long>() {
+        @Override
+        public Long handleResponse(final HttpResponse response) throws ClientProtocolException, IOException {
+            final int status = response.getStatusLine().getStatusCode();
+            final HttpEntity entity = response.getEntity();
+            if (status < 200 || status >= 300 || entity == null) {
+                return 0l;
+            }
+            try (final InputStream is = entity.getContent()) {
+                return countChildElements(is, "node");
+            }
+        }
+    };
+
+    public static long readTotalCount(final InputStream is) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = s_inputFactory.createXMLStreamReader(is);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    final String totalCount = reader.getAttributeValue(null, "totalCount");
+                    if (totalCount == null) {
+                        throw new IOException("Root element <" + reader.getLocalName() + "> has no totalCount attribute.");
+                    }
+                    return Long.valueOf(totalCount, 10);
+                }
+            }
+            throw new IOException("Document has no root element.");
+        } catch (final XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    public static long countChildElements(final InputStream is, final String localName) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = s_inputFactory.createXMLStreamReader(is);
+            long count = 0;
+            int depth = 0;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 2 && localName.equals(reader.getLocalName())) {
+                        count++;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return count;
+        } catch (final XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    private static void close(final XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (final XMLStreamException e) {
+                // we're done with it anyways
+            }
+        }
+    }
+}
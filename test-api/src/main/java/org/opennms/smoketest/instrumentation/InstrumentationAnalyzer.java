@@ -0,0 +1,262 @@
+package org.opennms.smoketest.instrumentation;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pairs the Collectd begin and end events in an <code>instrumentation.log</code>
+ * by thread, type, and target, and reports the latencies.
+ *
+ * Production logs run to gigabytes, so the file is memory-mapped a window at a
+ * time and split into chunks on line boundaries, one per thread.  Each chunk is
+ * paired on its own; begins still open at the end of a chunk and ends seen
+ * before their begin are then matched up across chunks, in file order.
+ *
+ * <pre>
+ * java -cp test-api.jar:... org.opennms.smoketest.instrumentation.InstrumentationAnalyzer instrumentation.log
+ * </pre>
+ */
+public class InstrumentationAnalyzer {
+    private static final Logger LOG = LoggerFactory.getLogger(InstrumentationAnalyzer.class);
+
+    private static final long WINDOW_SIZE = Long.getLong("org.opennms.smoketest.instrumentation.window-size", 64 * 1024 * 1024);
+    // not worth splitting up anything smaller
+    private static final long MIN_CHUNK_SIZE = 8 * 1024 * 1024;
+    // ends without a begin in their own chunk, kept for matching with earlier chunks
+    private static final int MAX_LEADING_ENDS = 100000;
+    private static final byte[] MARKER = InstrumentationEvent.COLLECT_MARKER.getBytes(StandardCharsets.US_ASCII);
+
+    private final int m_threads;
+    private final long m_interval;
+
+    public InstrumentationAnalyzer() {
+        this(Integer.getInteger("org.opennms.smoketest.instrumentation.threads", Runtime.getRuntime().availableProcessors()),
+             Long.getLong("org.opennms.smoketest.instrumentation.interval", 60), TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param threads the most threads to read the file with
+     * @param interval the width of each throughput interval
+     */
+    public InstrumentationAnalyzer(final int threads, final long interval, final TimeUnit unit) {
+        m_threads = Math.max(1, threads);
+        m_interval = Math.max(1, unit.toMillis(interval));
+    }
+
+    public InstrumentationReport analyze(final Path file) throws IOException {
+        final long start = System.currentTimeMillis();
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final int chunkCount = (int)Math.max(1, Math.min(m_threads, size / MIN_CHUNK_SIZE));
+            final List<Chunk> chunks = new ArrayList<>();
+            for (int i = 0; i < chunkCount; i++) {
+                chunks.add(new Chunk(channel, size, size * i / chunkCount, size * (i + 1) / chunkCount, i == 0));
+            }
+
+            final List<Chunk> results = new ArrayList<>();
+            if (chunkCount == 1) {
+                results.add(chunks.get(0).call());
+            } else {
+                final ExecutorService executor = Executors.newFixedThreadPool(chunkCount);
+                try {
+                    for (final Future<Chunk> future : executor.invokeAll(chunks)) {
+                        results.add(future.get());
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while reading " + file, e);
+                } catch (final ExecutionException e) {
+                    throw e.getCause() instanceof IOException? (IOException)e.getCause() : new IOException(e.getCause());
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            final InstrumentationReport report = merge(results);
+            LOG.debug("Analyzed {} ({} bytes, {} chunks) in {}ms", file, size, chunkCount, System.currentTimeMillis() - start);
+            return report;
+        }
+    }
+
+    /**
+     * Combine the chunks in file order, pairing the events each one couldn't pair by itself.
+     */
+    private InstrumentationReport merge(final List<Chunk> chunks) {
+        final InstrumentationReport report = new InstrumentationReport(m_interval);
+        final Map<String, InstrumentationEvent> open = new HashMap<>();
+        for (final Chunk chunk : chunks) {
+            report.merge(chunk.m_report);
+            for (final InstrumentationEvent end : chunk.m_leadingEnds) {
+                final InstrumentationEvent begin = open.remove(end.getPairKey());
+                if (begin == null) {
+                    report.recordUnmatchedEnd();
+                } else {
+                    report.recordPair(end, begin.getTimestamp());
+                }
+            }
+            for (final Map.Entry<String, InstrumentationEvent> entry : chunk.m_open.entrySet()) {
+                if (open.put(entry.getKey(), entry.getValue()) != null) {
+                    report.recordUnmatchedBegin();
+                }
+            }
+        }
+        for (int i = 0; i < open.size(); i++) {
+            report.recordUnmatchedBegin();
+        }
+        return report;
+    }
+
+    /**
+     * The lines that start within <code>[from, to)</code>.
+     */
+    private final class Chunk implements Callable<Chunk> {
+        private final FileChannel m_channel;
+        private final long m_size;
+        private final long m_from;
+        private final long m_to;
+        private final boolean m_first;
+
+        private final InstrumentationReport m_report = new InstrumentationReport(m_interval);
+        private final InstrumentationEvent.Timestamps m_timestamps = new InstrumentationEvent.Timestamps();
+        private final Map<String, InstrumentationEvent> m_open = new HashMap<>();
+        private final List<InstrumentationEvent> m_leadingEnds = new ArrayList<>();
+        private byte[] m_line = new byte[512];
+
+        private Chunk(final FileChannel channel, final long size, final long from, final long to, final boolean first) {
+            m_channel = channel;
+            m_size = size;
+            m_from = from;
+            m_to = to;
+            m_first = first;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            long pos = m_first? m_from : startOfNextLine(m_from - 1);
+            while (pos < m_to) {
+                final long windowEnd = Math.min(m_size, pos + WINDOW_SIZE);
+                final MappedByteBuffer buffer = m_channel.map(FileChannel.MapMode.READ_ONLY, pos, windowEnd - pos);
+                final int limit = buffer.limit();
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) == '\n') {
+                        handleLine(buffer, lineStart, i);
+                        lineStart = i + 1;
+                        if (pos + lineStart >= m_to) {
+                            break;
+                        }
+                    }
+                }
+                if (windowEnd == m_size && lineStart < limit && pos + lineStart < m_to) {
+                    // the last line has no newline
+                    handleLine(buffer, lineStart, limit);
+                    lineStart = limit;
+                } else if (lineStart == 0) {
+                    LOG.warn("Skipping a line longer than {} bytes at offset {}", WINDOW_SIZE, pos);
+                    lineStart = limit;
+                }
+                pos += lineStart;
+            }
+            return this;
+        }
+
+        private long startOfNextLine(final long from) throws IOException {
+            long pos = from;
+            while (pos < m_size) {
+                final long windowEnd = Math.min(m_size, pos + 64 * 1024);
+                final MappedByteBuffer buffer = m_channel.map(FileChannel.MapMode.READ_ONLY, pos, windowEnd - pos);
+                for (int i = 0; i < buffer.limit(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        return pos + i + 1;
+                    }
+                }
+                pos = windowEnd;
+            }
+            return m_size;
+        }
+
+        private void handleLine(final MappedByteBuffer buffer, final int from, int to) {
+            m_report.recordLine();
+            if (to > from && buffer.get(to - 1) == '\r') {
+                to--;
+            }
+            // only decode the lines that might be events
+            if (!contains(buffer, from, to, MARKER)) {
+                return;
+            }
+            final int length = to - from;
+            if (m_line.length < length) {
+                m_line = new byte[Math.max(length, m_line.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                m_line[i] = buffer.get(from + i);
+            }
+            final InstrumentationEvent event = InstrumentationEvent.parse(new String(m_line, 0, length, StandardCharsets.ISO_8859_1), m_timestamps);
+            if (event == null) {
+                return;
+            }
+            m_report.recordEvent();
+
+            final String key = event.getPairKey();
+            if (event.isBegin()) {
+                if (m_open.put(key, event) != null) {
+                    m_report.recordUnmatchedBegin();
+                }
+            } else {
+                final InstrumentationEvent begin = m_open.remove(key);
+                if (begin != null) {
+                    m_report.recordPair(event, begin.getTimestamp());
+                } else if (!m_first && m_leadingEnds.size() < MAX_LEADING_ENDS) {
+                    // the begin may be in an earlier chunk; if not, it's unmatched when the chunks are merged
+                    m_leadingEnds.add(event);
+                } else {
+                    m_report.recordUnmatchedEnd();
+                }
+            }
+        }
+    }
+
+    private static boolean contains(final MappedByteBuffer buffer, final int from, final int to, final byte[] pattern) {
+        final int last = to - pattern.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer.get(i + j) != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: InstrumentationAnalyzer <instrumentation.log> [...]");
+            System.exit(1);
+        }
+        final InstrumentationAnalyzer analyzer = new InstrumentationAnalyzer();
+        for (final String arg : args) {
+            System.out.println("=== " + arg);
+            System.out.println(analyzer.analyze(Paths.get(arg)));
+        }
+    }
+}
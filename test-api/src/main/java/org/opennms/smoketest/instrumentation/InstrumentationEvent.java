@@ -0,0 +1,172 @@
+package org.opennms.smoketest.instrumentation;
+
+import java.util.Calendar;
+
+/**
+ * One Collectd line from <code>instrumentation.log</code>, ie:
+ *
+ * <pre>
+ * 2010-05-26 12:12:40,883 DEBUG [CollectdScheduler-50 Pool-fiber11] Collectd: collector.collect: begin:24/216.216.217.254/SNMP
+ * 2010-06-01 09:36:28,995 DEBUG [CollectdScheduler-50 Pool-fiber1] Collectd: collector.collect: persistDataQueueing: end: 19/209.61.128.9/SNMP
+ * </pre>
+ */
+public class InstrumentationEvent {
+    static final String COLLECT_MARKER = "collector.collect: ";
+    private static final String PERSIST_MARKER = "persistDataQueueing:";
+
+    public static enum Type {
+        /** the collector gathering data: <code>collector.collect: begin:</code> */
+        COLLECT,
+        /** queueing the collected data for persisting: <code>persistDataQueueing: begin:</code> */
+        PERSIST
+    }
+
+    private final long m_timestamp;
+    private final String m_thread;
+    private final Type m_type;
+    private final boolean m_begin;
+    private final String m_target;
+
+    public InstrumentationEvent(final long timestamp, final String thread, final Type type, final boolean begin, final String target) {
+        m_timestamp = timestamp;
+        m_thread = thread;
+        m_type = type;
+        m_begin = begin;
+        m_target = target;
+    }
+
+    public long getTimestamp() {
+        return m_timestamp;
+    }
+    public String getThread() {
+        return m_thread;
+    }
+    public Type getType() {
+        return m_type;
+    }
+    public boolean isBegin() {
+        return m_begin;
+    }
+    /**
+     * The collection target, <code>&lt;nodeId&gt;/&lt;ip address&gt;/&lt;service&gt;</code>.
+     */
+    public String getTarget() {
+        return m_target;
+    }
+    public String getNodeId() {
+        final int slash = m_target.indexOf('/');
+        return slash < 0? m_target : m_target.substring(0, slash);
+    }
+    public String getService() {
+        return m_target.substring(m_target.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * The key a begin event and its end have in common.
+     */
+    String getPairKey() {
+        return m_type.name() + '|' + m_thread + '|' + m_target;
+    }
+
+    /**
+     * Parse a log line.
+     *
+     * @return the event, or <code>null</code> if the line isn't a Collectd begin or end
+     */
+    public static InstrumentationEvent parse(final String line) {
+        return parse(line, new Timestamps());
+    }
+
+    static InstrumentationEvent parse(final String line, final Timestamps timestamps) {
+        final int marker = line.indexOf(COLLECT_MARKER);
+        if (marker < 0) {
+            return null;
+        }
+        final long timestamp = timestamps.parse(line);
+        final int open = line.indexOf('[');
+        final int close = open < 0? -1 : line.indexOf("] ", open);
+        if (timestamp < 0 || close < 0 || close > marker) {
+            return null;
+        }
+
+        int pos = marker + COLLECT_MARKER.length();
+        Type type = Type.COLLECT;
+        if (line.startsWith(PERSIST_MARKER, pos)) {
+            type = Type.PERSIST;
+            pos += PERSIST_MARKER.length();
+            while (pos < line.length() && line.charAt(pos) == ' ') {
+                pos++;
+            }
+        }
+        final boolean begin;
+        if (line.startsWith("begin:", pos)) {
+            begin = true;
+            pos += "begin:".length();
+        } else if (line.startsWith("end:", pos)) {
+            begin = false;
+            pos += "end:".length();
+        } else {
+            return null;
+        }
+        final String target = line.substring(pos).trim();
+        if (target.isEmpty()) {
+            return null;
+        }
+        return new InstrumentationEvent(timestamp, line.substring(open + 1, close), type, begin, target);
+    }
+
+    /**
+     * Parses the <code>yyyy-MM-dd HH:mm:ss,SSS</code> timestamps at the start of
+     * each line, in the local time zone.  Lines are mostly from the same day, so
+     * the start of the day is only worked out when the date changes.  Not thread-safe.
+     */
+    static final class Timestamps {
+        private final Calendar m_calendar = Calendar.getInstance();
+        private String m_date;
+        private long m_midnight;
+
+        long parse(final String line) {
+            if (line.length() < 23 || line.charAt(4) != '-' || line.charAt(7) != '-' || line.charAt(10) != ' '
+                    || line.charAt(13) != ':' || line.charAt(16) != ':' || line.charAt(19) != ',') {
+                return -1;
+            }
+            if (m_date == null || !line.startsWith(m_date)) {
+                final int year = digits(line, 0, 4);
+                final int month = digits(line, 5, 2);
+                final int day = digits(line, 8, 2);
+                if (year < 0 || month < 1 || day < 1) {
+                    return -1;
+                }
+                m_calendar.clear();
+                m_calendar.set(year, month - 1, day);
+                m_midnight = m_calendar.getTimeInMillis();
+                m_date = line.substring(0, 10);
+            }
+            final int hours = digits(line, 11, 2);
+            final int minutes = digits(line, 14, 2);
+            final int seconds = digits(line, 17, 2);
+            final int millis = digits(line, 20, 3);
+            if (hours < 0 || minutes < 0 || seconds < 0 || millis < 0) {
+                return -1;
+            }
+            return m_midnight + ((hours * 60 + minutes) * 60 + seconds) * 1000l + millis;
+        }
+
+        private static int digits(final String s, final int from, final int length) {
+            int value = 0;
+            for (int i = from; i < from + length; i++) {
+                final char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentationEvent [" + m_type + (m_begin? " begin " : " end ") + m_target + " on " + m_thread + " at " + m_timestamp + "]";
+    }
+}
@@ -0,0 +1,249 @@
+package org.opennms.smoketest.instrumentation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.opennms.smoketest.instrumentation.InstrumentationEvent.Type;
+import org.opennms.smoketest.timing.Histogram;
+
+/**
+ * Collection and persist latencies, the slowest targets, and throughput over
+ * time, from paired begin and end events.  Memory use grows with the number of
+ * targets and the time span covered, not with the number of events.
+ *
+ * Not thread-safe; {@link InstrumentationAnalyzer} gives each worker its own
+ * report and merges them.
+ */
+public class InstrumentationReport {
+    private final long m_interval;
+    private final Map<String, Histogram> m_latencies = new TreeMap<>();
+    private final Map<String, TargetStats> m_targets = new HashMap<>();
+    // interval start -> completed collections, completed persists
+    private final TreeMap<Long, long[]> m_throughput = new TreeMap<>();
+    private long m_lines;
+    private long m_events;
+    private long m_unmatchedBegins;
+    private long m_unmatchedEnds;
+
+    public static final class TargetStats {
+        private final Type m_type;
+        private final String m_target;
+        private long m_count;
+        private long m_total;
+        private long m_max;
+
+        private TargetStats(final Type type, final String target) {
+            m_type = type;
+            m_target = target;
+        }
+
+        public Type getType() {
+            return m_type;
+        }
+        public String getTarget() {
+            return m_target;
+        }
+        public long getCount() {
+            return m_count;
+        }
+        public long getMax() {
+            return m_max;
+        }
+        public double getMean() {
+            return m_count == 0? 0 : (double)m_total / m_count;
+        }
+    }
+
+    /**
+     * @param interval the width of each throughput interval, in milliseconds
+     */
+    public InstrumentationReport(final long interval) {
+        m_interval = interval;
+    }
+
+    void recordLine() {
+        m_lines++;
+    }
+
+    void recordEvent() {
+        m_events++;
+    }
+
+    void recordUnmatchedBegin() {
+        m_unmatchedBegins++;
+    }
+
+    void recordUnmatchedEnd() {
+        m_unmatchedEnds++;
+    }
+
+    void recordPair(final InstrumentationEvent end, final long begin) {
+        final long latency = Math.max(0, end.getTimestamp() - begin);
+        final String type = end.getType().name().toLowerCase();
+        getLatencies(type).record(latency);
+        getLatencies(type + "[" + end.getService() + "]").record(latency);
+
+        final String key = end.getType().name() + '|' + end.getTarget();
+        TargetStats stats = m_targets.get(key);
+        if (stats == null) {
+            stats = new TargetStats(end.getType(), end.getTarget());
+            m_targets.put(key, stats);
+        }
+        stats.m_count++;
+        stats.m_total += latency;
+        stats.m_max = Math.max(stats.m_max, latency);
+
+        final long interval = end.getTimestamp() - end.getTimestamp() % m_interval;
+        long[] counts = m_throughput.get(interval);
+        if (counts == null) {
+            counts = new long[2];
+            m_throughput.put(interval, counts);
+        }
+        counts[end.getType().ordinal()]++;
+    }
+
+    private Histogram getLatencies(final String name) {
+        Histogram histogram = m_latencies.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            m_latencies.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Add everything in another report to this one.
+     */
+    void merge(final InstrumentationReport other) {
+        m_lines += other.m_lines;
+        m_events += other.m_events;
+        m_unmatchedBegins += other.m_unmatchedBegins;
+        m_unmatchedEnds += other.m_unmatchedEnds;
+        for (final Map.Entry<String, Histogram> entry : other.m_latencies.entrySet()) {
+            getLatencies(entry.getKey()).add(entry.getValue());
+        }
+        for (final Map.Entry<String, TargetStats> entry : other.m_targets.entrySet()) {
+            final TargetStats theirs = entry.getValue();
+            final TargetStats ours = m_targets.get(entry.getKey());
+            if (ours == null) {
+                m_targets.put(entry.getKey(), theirs);
+            } else {
+                ours.m_count += theirs.m_count;
+                ours.m_total += theirs.m_total;
+                ours.m_max = Math.max(ours.m_max, theirs.m_max);
+            }
+        }
+        for (final Map.Entry<Long, long[]> entry : other.m_throughput.entrySet()) {
+            final long[] ours = m_throughput.get(entry.getKey());
+            if (ours == null) {
+                m_throughput.put(entry.getKey(), entry.getValue());
+            } else {
+                ours[0] += entry.getValue()[0];
+                ours[1] += entry.getValue()[1];
+            }
+        }
+    }
+
+    public long getLines() {
+        return m_lines;
+    }
+    public long getEvents() {
+        return m_events;
+    }
+    /**
+     * Begins with no end, ie collections still running when the log ends.
+     */
+    public long getUnmatchedBegins() {
+        return m_unmatchedBegins;
+    }
+    /**
+     * Ends with no begin, ie from collections that started before the log did.
+     */
+    public long getUnmatchedEnds() {
+        return m_unmatchedEnds;
+    }
+
+    /**
+     * Latency histograms, keyed by type (<code>collect</code>, <code>persist</code>)
+     * and by type and service (<code>collect[SNMP]</code>).
+     */
+    public Map<String, Histogram> getLatencies() {
+        return Collections.unmodifiableMap(m_latencies);
+    }
+
+    public Histogram getLatencies(final Type type) {
+        final Histogram histogram = m_latencies.get(type.name().toLowerCase());
+        return histogram == null? new Histogram() : histogram;
+    }
+
+    /**
+     * The targets with the longest single collection (or persist), slowest first.
+     */
+    public List<TargetStats> getSlowestTargets(final Type type, final int count) {
+        final List<TargetStats> targets = new ArrayList<>();
+        for (final TargetStats stats : m_targets.values()) {
+            if (stats.getType() == type) {
+                targets.add(stats);
+            }
+        }
+        Collections.sort(targets, new Comparator<TargetStats>() {
+            @Override public int compare(final TargetStats a, final TargetStats b) {
+                return Long.compare(b.getMax(), a.getMax());
+            }
+        });
+        return targets.subList(0, Math.min(count, targets.size()));
+    }
+
+    /**
+     * Completed collections and persists per interval, keyed by the start of the interval.
+     */
+    public Map<Long, long[]> getThroughput() {
+        return Collections.unmodifiableMap(m_throughput);
+    }
+
+    public void write(final Path to) throws IOException {
+        if (to.getParent() != null) {
+            Files.createDirectories(to.getParent());
+        }
+        Files.write(to, toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d lines, %d events, %d unmatched begins, %d unmatched ends%n%n", m_lines, m_events, m_unmatchedBegins, m_unmatchedEnds));
+
+        sb.append(String.format("%-30s %10s %10s %10s %10s %10s%n", "latency (ms)", "count", "p50", "p95", "p99", "max"));
+        for (final Map.Entry<String, Histogram> entry : m_latencies.entrySet()) {
+            final Histogram h = entry.getValue();
+            sb.append(String.format("%-30s %10d %10d %10d %10d %10d%n", entry.getKey(), h.getCount(), h.getPercentile(50), h.getPercentile(95), h.getPercentile(99), h.getMax()));
+        }
+
+        for (final Type type : Type.values()) {
+            sb.append(String.format("%nslowest %s targets%n", type.name().toLowerCase()));
+            sb.append(String.format("%-50s %10s %10s %10s%n", "target", "count", "mean", "max"));
+            for (final TargetStats stats : getSlowestTargets(type, 20)) {
+                sb.append(String.format("%-50s %10d %10.0f %10d%n", stats.getTarget(), stats.getCount(), stats.getMean(), stats.getMax()));
+            }
+        }
+
+        sb.append(String.format("%nthroughput per %ds%n", m_interval / 1000));
+        sb.append(String.format("%-20s %10s %10s%n", "interval", "collect", "persist"));
+        final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        for (final Map.Entry<Long, long[]> entry : m_throughput.entrySet()) {
+            sb.append(String.format("%-20s %10d %10d%n", format.format(new Date(entry.getKey())), entry.getValue()[0], entry.getValue()[1]));
+        }
+        return sb.toString();
+    }
+}
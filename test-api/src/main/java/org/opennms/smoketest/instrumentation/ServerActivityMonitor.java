@@ -0,0 +1,480 @@
+package org.opennms.smoketest.instrumentation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.smoketest.timing.StepTimings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tails the OpenNMS logs while tests run, the way <code>do-smoke-test.pl</code>
+ * does with File::Tail, and reports which server activity overlapped each
+ * test's steps in <code>target/server-activity/&lt;class&gt;.&lt;method&gt;.txt</code>.
+ *
+ * Collectd begin/end pairs in <code>instrumentation.log</code> become
+ * activities with a duration (ie <code>collect[SNMP]</code>); every other
+ * timestamped line counts as activity of its log (ie <code>provisiond</code>),
+ * with warnings and errors kept for the report.
+ *
+ * All the reading, pairing, and reporting happens on one background thread.
+ * The test thread only appends to queues, so tailing never slows it down.
+ * Server events are matched to steps by timestamp, so this assumes the server's
+ * clock agrees with the test's, as it does when both run on the same host.
+ *
+ * The test case only starts one when <code>org.opennms.smoketest.server-activity</code>
+ * is set.
+ *
+ * <ul>
+ * <li><code>org.opennms.smoketest.server-activity.poll-interval</code>: how often to read the logs, in milliseconds</li>
+ * <li><code>org.opennms.smoketest.server-activity.slow-step</code>: steps at least this long, in milliseconds, get the details of what overlapped them</li>
+ * </ul>
+ */
+public class ServerActivityMonitor implements StepTimings.Listener {
+    private static final Logger LOG = LoggerFactory.getLogger(ServerActivityMonitor.class);
+
+    private static final long SLOW_STEP = Long.getLong("org.opennms.smoketest.server-activity.slow-step", 1000);
+    // how long to keep activity around for tests that haven't finished yet
+    private static final long RETENTION = TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_ACTIVITIES = 200000;
+    private static final int MAX_OPEN_BEGINS = 10000;
+    // the most to read from one file in one poll, so a burst of logging can't stall the other files
+    private static final int MAX_READ = 4 * 1024 * 1024;
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int MAX_DETAILS = 20;
+
+    private final List<Path> m_directories;
+    private final long m_pollInterval;
+    private final Path m_reportDirectory;
+    private final ScheduledExecutorService m_executor;
+
+    // written by test threads, read by the tailer
+    private final ThreadLocal<TestRecord> m_currentTest = new ThreadLocal<>();
+    private final Queue<TestRecord> m_finished = new ConcurrentLinkedQueue<>();
+
+    // only touched by the tailer thread
+    private final Map<Path, TailedFile> m_files = new HashMap<>();
+    private final Deque<Activity> m_activities = new ArrayDeque<>();
+    private final Map<String, InstrumentationEvent> m_openBegins = new LinkedHashMap<String, InstrumentationEvent>() {
+        private static final long serialVersionUID = 1L;
+        @Override protected boolean removeEldestEntry(final Map.Entry<String, InstrumentationEvent> eldest) {
+            return size() > MAX_OPEN_BEGINS;
+        }
+    };
+    private final InstrumentationEvent.Timestamps m_timestamps = new InstrumentationEvent.Timestamps();
+    private boolean m_initialScan = true;
+
+    /**
+     * Something the server did: a paired begin and end, or a single log line.
+     */
+    public static final class Activity {
+        private final String m_category;
+        private final String m_detail;
+        private final long m_start;
+        private final long m_end;
+
+        Activity(final String category, final String detail, final long start, final long end) {
+            m_category = category;
+            m_detail = detail;
+            m_start = start;
+            m_end = end;
+        }
+
+        public String getCategory() {
+            return m_category;
+        }
+        /**
+         * The collection target, or the message of a warning or error; otherwise <code>null</code>.
+         */
+        public String getDetail() {
+            return m_detail;
+        }
+        public long getStart() {
+            return m_start;
+        }
+        public long getEnd() {
+            return m_end;
+        }
+        public long getDuration() {
+            return m_end - m_start;
+        }
+
+        boolean overlaps(final long start, final long end) {
+            return m_start <= end && m_end >= start;
+        }
+    }
+
+    private static final class StepRecord {
+        private final String m_name;
+        private final long m_start;
+        private final long m_end;
+
+        private StepRecord(final String name, final long start, final long end) {
+            m_name = name;
+            m_start = start;
+            m_end = end;
+        }
+    }
+
+    private static final class TestRecord {
+        private final String m_name;
+        private final long m_start = System.currentTimeMillis();
+        private volatile long m_end;
+        private final Queue<StepRecord> m_steps = new ConcurrentLinkedQueue<>();
+
+        private TestRecord(final String name) {
+            m_name = name;
+        }
+    }
+
+    /**
+     * @param directories the log directories to tail; <code>*.log</code> in each is read
+     * @param reportDirectory where to write the per-test reports
+     */
+    public ServerActivityMonitor(final List<Path> directories, final Path reportDirectory) {
+        m_directories = new ArrayList<>(directories);
+        m_reportDirectory = reportDirectory;
+        m_pollInterval = Long.getLong("org.opennms.smoketest.server-activity.poll-interval", 500);
+        m_executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "server-activity-monitor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Start tailing, from the current end of each log, and listening for test steps.
+     */
+    public ServerActivityMonitor start() {
+        StepTimings.addListener(this);
+        m_executor.scheduleWithFixedDelay(new Runnable() {
+            @Override public void run() {
+                try {
+                    poll(false);
+                } catch (final RuntimeException e) {
+                    LOG.warn("Failed to read server logs.", e);
+                }
+            }
+        }, 0, m_pollInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread("server-activity-monitor-shutdown") {
+            @Override public void run() {
+                stop();
+            }
+        });
+        LOG.debug("Tailing server logs in {}", m_directories);
+        return this;
+    }
+
+    /**
+     * Read whatever is left and write the reports for all finished tests.
+     */
+    public void stop() {
+        StepTimings.removeListener(this);
+        m_executor.shutdown();
+        try {
+            if (m_executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                poll(true);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Called on the test thread when a test starts.
+     */
+    public void testStarted(final String name) {
+        m_currentTest.set(new TestRecord(name));
+    }
+
+    /**
+     * Called on the test thread when a test finishes; its report is written
+     * once the logs have caught up.
+     */
+    public void testFinished() {
+        final TestRecord test = m_currentTest.get();
+        if (test != null) {
+            m_currentTest.remove();
+            test.m_end = System.currentTimeMillis();
+            m_finished.offer(test);
+        }
+    }
+
+    @Override
+    public void stepStarted(final String name, final long start) {
+    }
+
+    @Override
+    public void stepFinished(final String name, final long start, final long end) {
+        final TestRecord test = m_currentTest.get();
+        if (test != null) {
+            test.m_steps.offer(new StepRecord(name, start, end));
+        }
+    }
+
+    private void poll(final boolean flush) {
+        for (final Path directory : m_directories) {
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try (final DirectoryStream<Path> logs = Files.newDirectoryStream(directory, "*.log")) {
+                for (final Path log : logs) {
+                    TailedFile file = m_files.get(log);
+                    if (file == null) {
+                        // logs that were there before we started are only read from where they are now; new ones from the start
+                        file = new TailedFile(log, m_initialScan);
+                        m_files.put(log, file);
+                    }
+                    file.read();
+                }
+            } catch (final IOException e) {
+                LOG.debug("Unable to list logs in {}", directory, e);
+            }
+        }
+        m_initialScan = false;
+
+        final long now = System.currentTimeMillis();
+        while (m_activities.size() > MAX_ACTIVITIES || (!m_activities.isEmpty() && m_activities.peekFirst().getEnd() < now - RETENTION)) {
+            m_activities.removeFirst();
+        }
+
+        // give the server a couple of polls to write out what it was doing when the test ended
+        final Iterator<TestRecord> it = m_finished.iterator();
+        while (it.hasNext()) {
+            final TestRecord test = it.next();
+            if (flush || test.m_end + 2 * m_pollInterval <= now) {
+                it.remove();
+                writeReport(test);
+            }
+        }
+    }
+
+    private void handleLine(final String category, final String line) {
+        final InstrumentationEvent event = InstrumentationEvent.parse(line, m_timestamps);
+        if (event != null) {
+            if (event.isBegin()) {
+                m_openBegins.put(event.getPairKey(), event);
+            } else {
+                final InstrumentationEvent begin = m_openBegins.remove(event.getPairKey());
+                if (begin != null) {
+                    m_activities.addLast(new Activity(event.getType().name().toLowerCase() + "[" + event.getService() + "]", event.getTarget(), begin.getTimestamp(), event.getTimestamp()));
+                }
+            }
+            return;
+        }
+
+        final long timestamp = m_timestamps.parse(line);
+        if (timestamp < 0) {
+            // stack traces and other continuation lines
+            return;
+        }
+        String detail = null;
+        if (line.startsWith("WARN", 24) || line.startsWith("ERROR", 24)) {
+            detail = line.substring(24, Math.min(line.length(), 24 + 200));
+        }
+        m_activities.addLast(new Activity(category, detail, timestamp, timestamp));
+    }
+
+    private void writeReport(final TestRecord test) {
+        final List<StepRecord> steps = new ArrayList<>(test.m_steps);
+        Collections.sort(steps, new Comparator<StepRecord>() {
+            @Override public int compare(final StepRecord a, final StepRecord b) {
+                return Long.compare(a.m_start, b.m_start);
+            }
+        });
+
+        final List<Activity> during = new ArrayList<>();
+        for (final Activity activity : m_activities) {
+            if (activity.overlaps(test.m_start, test.m_end)) {
+                during.add(activity);
+            }
+        }
+
+        final SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss,SSS");
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: %dms, %d steps, %d server events%n", test.m_name, test.m_end - test.m_start, steps.size(), during.size()));
+        sb.append(String.format("overall: %s%n%n", summarize(during, test.m_start, test.m_end)));
+
+        sb.append(String.format("%-12s %10s  %-60s %s%n", "start", "ms", "step", "server activity"));
+        for (final StepRecord step : steps) {
+            final List<Activity> overlapping = new ArrayList<>();
+            for (final Activity activity : during) {
+                if (activity.overlaps(step.m_start, step.m_end)) {
+                    overlapping.add(activity);
+                }
+            }
+            final long duration = step.m_end - step.m_start;
+            sb.append(String.format("%-12s %10d%s %-60s %s%n", format.format(new Date(step.m_start)), duration, duration >= SLOW_STEP? "*" : " ", step.m_name, summarize(overlapping, step.m_start, step.m_end)));
+            if (duration >= SLOW_STEP) {
+                appendDetails(sb, overlapping, format);
+            }
+        }
+
+        final Path to = m_reportDirectory.resolve(test.m_name.replaceAll("[^A-Za-z0-9._-]", "_") + ".txt");
+        try {
+            Files.createDirectories(to.getParent());
+            Files.write(to, sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            LOG.warn("Failed to write server activity report to {}", to, e);
+        }
+    }
+
+    /**
+     * ie <code>collect[SNMP] x3 (4100ms), provisiond x120 (2 warn/error)</code>
+     */
+    private static String summarize(final List<Activity> activities, final long start, final long end) {
+        final Map<String, long[]> counts = new TreeMap<>();
+        for (final Activity activity : activities) {
+            long[] c = counts.get(activity.getCategory());
+            if (c == null) {
+                c = new long[3];
+                counts.put(activity.getCategory(), c);
+            }
+            c[0]++;
+            // only the part that overlapped
+            c[1] += Math.max(0, Math.min(end, activity.getEnd()) - Math.max(start, activity.getStart()));
+            if (activity.getDetail() != null && activity.getStart() == activity.getEnd()) {
+                c[2]++;
+            }
+        }
+        if (counts.isEmpty()) {
+            return "-";
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, long[]> entry : counts.entrySet()) {
+            final long[] c = entry.getValue();
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append(" x").append(c[0]);
+            if (c[1] > 0) {
+                sb.append(" (").append(c[1]).append("ms)");
+            }
+            if (c[2] > 0) {
+                sb.append(" (").append(c[2]).append(" warn/error)");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The longest activities and any warnings or errors.
+     */
+    private static void appendDetails(final StringBuilder sb, final List<Activity> activities, final SimpleDateFormat format) {
+        final List<Activity> details = new ArrayList<>();
+        for (final Activity activity : activities) {
+            if (activity.getDetail() != null) {
+                details.add(activity);
+            }
+        }
+        Collections.sort(details, new Comparator<Activity>() {
+            @Override public int compare(final Activity a, final Activity b) {
+                return Long.compare(b.getDuration(), a.getDuration());
+            }
+        });
+        for (final Activity activity : details.subList(0, Math.min(MAX_DETAILS, details.size()))) {
+            if (activity.getDuration() > 0) {
+                sb.append(String.format("%14s %s-%s %s %s (%dms)%n", "", format.format(new Date(activity.getStart())), format.format(new Date(activity.getEnd())), activity.getCategory(), activity.getDetail(), activity.getDuration()));
+            } else {
+                sb.append(String.format("%14s %s %s %s%n", "", format.format(new Date(activity.getStart())), activity.getCategory(), activity.getDetail()));
+            }
+        }
+    }
+
+    /**
+     * A log being followed: where we're up to, and any partial line at the end.
+     */
+    private final class TailedFile {
+        private final Path m_path;
+        private final String m_category;
+        private long m_position = -1;
+        private final ByteArrayOutputStream m_partial = new ByteArrayOutputStream();
+        private final ByteBuffer m_buffer = ByteBuffer.allocate(64 * 1024);
+
+        private TailedFile(final Path path, final boolean fromEnd) {
+            m_path = path;
+            final String name = path.getFileName().toString();
+            m_category = name.endsWith(".log")? name.substring(0, name.length() - ".log".length()) : name;
+            m_position = fromEnd? -1 : 0;
+        }
+
+        private void read() {
+            try (final FileChannel channel = FileChannel.open(m_path, StandardOpenOption.READ)) {
+                final long size = channel.size();
+                if (m_position < 0) {
+                    m_position = size;
+                } else if (size < m_position) {
+                    LOG.debug("{} was truncated or rotated, reading from the start.", m_path);
+                    m_position = 0;
+                    m_partial.reset();
+                }
+                long read = 0;
+                channel.position(m_position);
+                while (read < MAX_READ) {
+                    m_buffer.clear();
+                    final int count = channel.read(m_buffer);
+                    if (count <= 0) {
+                        break;
+                    }
+                    read += count;
+                    handleBytes(m_buffer.array(), count);
+                }
+                m_position += read;
+            } catch (final NoSuchFileException e) {
+                m_files.remove(m_path);
+            } catch (final IOException e) {
+                LOG.debug("Unable to read {}", m_path, e);
+            }
+        }
+
+        private void handleBytes(final byte[] bytes, final int count) {
+            int lineStart = 0;
+            for (int i = 0; i < count; i++) {
+                if (bytes[i] == '\n') {
+                    m_partial.write(bytes, lineStart, i - lineStart);
+                    final String line = new String(m_partial.toByteArray(), StandardCharsets.UTF_8);
+                    m_partial.reset();
+                    handleLine(m_category, line.endsWith("\r")? line.substring(0, line.length() - 1) : line);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < count) {
+                if (m_partial.size() + count - lineStart > MAX_LINE) {
+                    // not a log we understand; skip to the next newline
+                    m_partial.reset();
+                } else {
+                    m_partial.write(bytes, lineStart, count - lineStart);
+                }
+            }
+        }
+    }
+}
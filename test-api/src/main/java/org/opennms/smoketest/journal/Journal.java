@@ -0,0 +1,169 @@
+package org.opennms.smoketest.journal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.opennms.smoketest.timing.StepTimings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * A bounded in-memory journal of what the tests did: every helper step (from
+ * {@link StepTimings}), plus test starts and finishes and anything else that's
+ * recorded explicitly.  It's only written out when a test fails, so passing
+ * tests don't pay for logging.
+ *
+ * The journal is a ring buffer: recording claims a slot with a single atomic
+ * increment and never blocks, and the oldest entries are overwritten.  Messages
+ * are only formatted when the journal is written.
+ *
+ * <ul>
+ * <li><code>org.opennms.smoketest.journal.size</code>: how many entries to keep (rounded up to a power of two)</li>
+ * </ul>
+ */
+public abstract class Journal {
+    private static final Logger LOG = LoggerFactory.getLogger(Journal.class);
+
+    private static final int SIZE = Integer.highestOneBit(Math.max(2, Integer.getInteger("org.opennms.smoketest.journal.size", 4096) - 1)) << 1;
+    private static final int MASK = SIZE - 1;
+
+    private static final AtomicLong s_sequence = new AtomicLong();
+    private static final AtomicReferenceArray<Entry> s_entries = new AtomicReferenceArray<>(SIZE);
+
+    static {
+        StepTimings.addListener(new StepTimings.Listener() {
+            @Override public void stepStarted(final String name, final long start) {
+                record(Type.STEP_START, name, -1, null);
+            }
+            @Override public void stepFinished(final String name, final long start, final long end) {
+                record(Type.STEP_END, name, end - start, null);
+            }
+        });
+    }
+
+    public static enum Type {
+        TEST_START,
+        TEST_END,
+        STEP_START,
+        STEP_END,
+        NOTE
+    }
+
+    public static final class Entry {
+        private final long m_sequence;
+        private final long m_timestamp = System.currentTimeMillis();
+        private final String m_thread = Thread.currentThread().getName();
+        private final Type m_type;
+        private final String m_name;
+        private final long m_duration;
+        private final String m_format;
+        private final Object[] m_args;
+
+        private Entry(final long sequence, final Type type, final String name, final long duration, final String format, final Object[] args) {
+            m_sequence = sequence;
+            m_type = type;
+            m_name = name;
+            m_duration = duration;
+            m_format = format;
+            m_args = args;
+        }
+
+        public long getSequence() {
+            return m_sequence;
+        }
+        public long getTimestamp() {
+            return m_timestamp;
+        }
+        public String getThread() {
+            return m_thread;
+        }
+        public Type getType() {
+            return m_type;
+        }
+        public String getName() {
+            return m_name;
+        }
+        /**
+         * How long the step took, in milliseconds, or -1.
+         */
+        public long getDuration() {
+            return m_duration;
+        }
+        public String getMessage() {
+            return m_format == null? null : MessageFormatter.arrayFormat(m_format, m_args).getMessage();
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(new SimpleDateFormat("HH:mm:ss,SSS").format(new Date(m_timestamp)))
+                .append(" [").append(m_thread).append("] ")
+                .append(m_type).append(' ').append(m_name);
+            if (m_duration >= 0) {
+                sb.append(' ').append(m_duration).append("ms");
+            }
+            final String message = getMessage();
+            if (message != null) {
+                sb.append(": ").append(message);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Record a note, ie <code>Journal.note("createRequisition", "{} nodes in {}", count, foreignSource)</code>.
+     *
+     * @param format an SLF4J-style format, only formatted if the journal is written
+     */
+    public static void note(final String name, final String format, final Object... args) {
+        record(Type.NOTE, name, -1, format, args);
+    }
+
+    public static void record(final Type type, final String name, final long duration, final String format, final Object... args) {
+        final long sequence = s_sequence.getAndIncrement();
+        s_entries.set((int)(sequence & MASK), new Entry(sequence, type, name, duration, format, args));
+    }
+
+    /**
+     * Up to the last <code>count</code> entries, oldest first.  Entries being
+     * overwritten while this runs are skipped.
+     */
+    public static List<Entry> getLast(final int count) {
+        final long end = s_sequence.get();
+        final long start = Math.max(0, end - Math.min(count, SIZE));
+        final List<Entry> entries = new ArrayList<>((int)(end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            final Entry entry = s_entries.get((int)(sequence & MASK));
+            // a slot that hasn't been filled yet, or has already been reused
+            if (entry != null && entry.getSequence() == sequence) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Write the last <code>count</code> entries to a file.
+     */
+    public static void write(final Path to, final int count) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Entry entry : getLast(count)) {
+            sb.append(entry).append(System.lineSeparator());
+        }
+        try {
+            Files.createDirectories(to.getParent());
+            Files.write(to, sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            LOG.warn("Failed to write journal to {}", to, e);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package org.opennms.smoketest.timing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Timing samples from previous runs, for one OpenNMS version, and the
+ * comparison of the current run against them.
+ *
+ * Baselines are kept in <code>&lt;dir&gt;/&lt;version&gt;.json</code> (by default
+ * <code>baselines/</code> in the working directory, so they survive <code>mvn clean</code>),
+ * holding up to {@link #MAX_SAMPLES} of the most recent samples for each metric.
+ *
+ * <ul>
+ * <li><code>org.opennms.smoketest.baseline.mode</code>: <code>off</code> (default),
+ *     <code>warn</code> (log and report regressions), or <code>fail</code> (also fail the test)</li>
+ * <li><code>org.opennms.smoketest.baseline.update</code>: add this run's samples to the baseline when the JVM exits</li>
+ * <li><code>org.opennms.smoketest.baseline.dir</code>: where baselines are kept</li>
+ * </ul>
+ */
+public class Baselines {
+    private static final Logger LOG = LoggerFactory.getLogger(Baselines.class);
+
+    public static final int MAX_SAMPLES = Integer.getInteger("org.opennms.smoketest.baseline.max-samples", 200);
+    // below this many baseline samples, there's nothing to compare against
+    private static final int MIN_BASELINE_SAMPLES = 5;
+    // below this many current samples, use percentiles instead of the rank test
+    private static final int MIN_RANK_TEST_SAMPLES = 8;
+    private static final double ALPHA = Double.parseDouble(System.getProperty("org.opennms.smoketest.baseline.alpha", "0.01"));
+    // ignore statistically significant changes too small to matter
+    private static final double MIN_RELATIVE_CHANGE = Double.parseDouble(System.getProperty("org.opennms.smoketest.baseline.min-change", "0.10"));
+    private static final long MIN_ABSOLUTE_CHANGE = Long.getLong("org.opennms.smoketest.baseline.min-change-ms", 50);
+
+    public static enum Mode {
+        OFF,
+        WARN,
+        FAIL;
+
+        public static Mode fromProperty() {
+            try {
+                return valueOf(System.getProperty("org.opennms.smoketest.baseline.mode", "off").toUpperCase());
+            } catch (final IllegalArgumentException e) {
+                LOG.warn("Unknown baseline mode {}, not checking baselines.", System.getProperty("org.opennms.smoketest.baseline.mode"));
+                return OFF;
+            }
+        }
+    }
+
+    public static enum Verdict {
+        /** no baseline to compare against */
+        NEW,
+        PASS,
+        REGRESS,
+        IMPROVE
+    }
+
+    public static final class Comparison {
+        private final String m_metric;
+        private final Verdict m_verdict;
+        private final long m_baselineMedian;
+        private final long m_currentMedian;
+        private final int m_baselineSamples;
+        private final int m_currentSamples;
+        private final String m_method;
+
+        private Comparison(final String metric, final Verdict verdict, final long baselineMedian, final long currentMedian, final int baselineSamples, final int currentSamples, final String method) {
+            m_metric = metric;
+            m_verdict = verdict;
+            m_baselineMedian = baselineMedian;
+            m_currentMedian = currentMedian;
+            m_baselineSamples = baselineSamples;
+            m_currentSamples = currentSamples;
+            m_method = method;
+        }
+
+        public String getMetric() {
+            return m_metric;
+        }
+        public Verdict getVerdict() {
+            return m_verdict;
+        }
+        public long getBaselineMedian() {
+            return m_baselineMedian;
+        }
+        public long getCurrentMedian() {
+            return m_currentMedian;
+        }
+        public int getBaselineSamples() {
+            return m_baselineSamples;
+        }
+        public int getCurrentSamples() {
+            return m_currentSamples;
+        }
+        /**
+         * How the verdict was reached, ie <code>mann-whitney p=0.0012</code>.
+         */
+        public String getMethod() {
+            return m_method;
+        }
+
+        @Override
+        public String toString() {
+            return m_verdict + " " + m_metric + ": median " + m_baselineMedian + "ms -> " + m_currentMedian + "ms (" + m_method + ", n=" + m_baselineSamples + "/" + m_currentSamples + ")";
+        }
+    }
+
+    private final String m_version;
+    private final Path m_file;
+    private final Map<String, long[]> m_samples = new TreeMap<>();
+
+    public Baselines(final String version) {
+        this(version, Paths.get(System.getProperty("org.opennms.smoketest.baseline.dir", "baselines")));
+    }
+
+    public Baselines(final String version, final Path directory) {
+        m_version = version;
+        m_file = directory.resolve(version.replaceAll("[^A-Za-z0-9._-]", "_") + ".json");
+        load();
+    }
+
+    public String getVersion() {
+        return m_version;
+    }
+
+    public synchronized long[] getSamples(final String metric) {
+        final long[] samples = m_samples.get(metric);
+        return samples == null? new long[0] : samples.clone();
+    }
+
+    /**
+     * Compare the current samples for a metric against its baseline.
+     */
+    public Comparison compare(final String metric, final long[] current) {
+        final long[] baseline = getSamples(metric);
+        final long currentMedian = percentile(current, 50);
+        final long baselineMedian = percentile(baseline, 50);
+        if (baseline.length < MIN_BASELINE_SAMPLES || current.length == 0) {
+            return new Comparison(metric, Verdict.NEW, baselineMedian, currentMedian, baseline.length, current.length, "insufficient baseline");
+        }
+
+        final boolean slower = currentMedian > baselineMedian;
+        final long change = Math.abs(currentMedian - baselineMedian);
+        final boolean large = change >= MIN_ABSOLUTE_CHANGE && change >= baselineMedian * MIN_RELATIVE_CHANGE;
+
+        if (current.length >= MIN_RANK_TEST_SAMPLES) {
+            final double p = MannWhitney.pValue(baseline, current);
+            final String method = String.format("mann-whitney p=%.4f", p);
+            if (p < ALPHA && large) {
+                return new Comparison(metric, slower? Verdict.REGRESS : Verdict.IMPROVE, baselineMedian, currentMedian, baseline.length, current.length, method);
+            }
+            return new Comparison(metric, Verdict.PASS, baselineMedian, currentMedian, baseline.length, current.length, method);
+        }
+
+        // too few samples for the rank test; only flag values outside the baseline's usual range
+        final long p95 = percentile(baseline, 95);
+        final long p5 = percentile(baseline, 5);
+        if (large && slower && currentMedian > p95 * (1 + MIN_RELATIVE_CHANGE)) {
+            return new Comparison(metric, Verdict.REGRESS, baselineMedian, currentMedian, baseline.length, current.length, "above baseline p95=" + p95);
+        } else if (large && !slower && currentMedian < p5 * (1 - MIN_RELATIVE_CHANGE)) {
+            return new Comparison(metric, Verdict.IMPROVE, baselineMedian, currentMedian, baseline.length, current.length, "below baseline p5=" + p5);
+        }
+        return new Comparison(metric, Verdict.PASS, baselineMedian, currentMedian, baseline.length, current.length, "within baseline p5-p95");
+    }
+
+    /**
+     * Compare every step recorded in {@link StepTimings} so far.
+     */
+    public List<Comparison> compareAll() {
+        final List<Comparison> comparisons = new ArrayList<>();
+        for (final Map.Entry<String, Histogram> entry : new TreeMap<>(StepTimings.getHistograms()).entrySet()) {
+            comparisons.add(compare(entry.getKey(), entry.getValue().getRecentValues()));
+        }
+        return comparisons;
+    }
+
+    /**
+     * Add samples to the baseline, dropping the oldest ones beyond {@link #MAX_SAMPLES}.
+     */
+    public synchronized void add(final String metric, final long[] values) {
+        final long[] existing = getSamples(metric);
+        final int size = Math.min(MAX_SAMPLES, existing.length + values.length);
+        final long[] merged = new long[size];
+        final int fromExisting = size - Math.min(values.length, size);
+        System.arraycopy(existing, existing.length - fromExisting, merged, 0, fromExisting);
+        System.arraycopy(values, values.length - (size - fromExisting), merged, fromExisting, size - fromExisting);
+        m_samples.put(metric, merged);
+    }
+
+    /**
+     * Add everything recorded in {@link StepTimings} during this run.
+     */
+    public void addAll() {
+        for (final Map.Entry<String, Histogram> entry : StepTimings.getHistograms().entrySet()) {
+            add(entry.getKey(), entry.getValue().getRecentValues());
+        }
+    }
+
+    public synchronized void save() {
+        final JsonObject metrics = new JsonObject();
+        for (final Map.Entry<String, long[]> entry : m_samples.entrySet()) {
+            final JsonArray values = new JsonArray();
+            for (final long value : entry.getValue()) {
+                values.add(new JsonPrimitive(value));
+            }
+            metrics.add(entry.getKey(), values);
+        }
+        final JsonObject json = new JsonObject();
+        json.addProperty("version", m_version);
+        json.add("metrics", metrics);
+        try {
+            Files.createDirectories(m_file.toAbsolutePath().getParent());
+            try (final BufferedWriter writer = Files.newBufferedWriter(m_file, StandardCharsets.UTF_8)) {
+                writer.write(json.toString());
+                writer.newLine();
+            }
+            LOG.info("Saved {} baseline metrics to {}", m_samples.size(), m_file);
+        } catch (final IOException e) {
+            LOG.warn("Failed to save baselines to {}", m_file, e);
+        }
+    }
+
+    private synchronized void load() {
+        try (final BufferedReader reader = Files.newBufferedReader(m_file, StandardCharsets.UTF_8)) {
+            final JsonObject json = new JsonParser().parse(reader).getAsJsonObject();
+            for (final Map.Entry<String, JsonElement> entry : json.getAsJsonObject("metrics").entrySet()) {
+                final JsonArray values = entry.getValue().getAsJsonArray();
+                final long[] samples = new long[values.size()];
+                for (int i = 0; i < samples.length; i++) {
+                    samples[i] = values.get(i).getAsLong();
+                }
+                m_samples.put(entry.getKey(), samples);
+            }
+            LOG.debug("Loaded {} baseline metrics from {}", m_samples.size(), m_file);
+        } catch (final NoSuchFileException e) {
+            LOG.debug("No baselines for version {} at {}", m_version, m_file);
+        } catch (final IOException | RuntimeException e) {
+            LOG.warn("Failed to load baselines from {}", m_file, e);
+        }
+    }
+
+    /**
+     * Write the comparisons as a table, regressions first.
+     */
+    public static void writeReport(final List<Comparison> comparisons, final Path to) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-8s %-80s %10s %10s %8s  %s%n", "verdict", "metric", "baseline", "current", "n", "method"));
+        for (final Verdict verdict : new Verdict[] { Verdict.REGRESS, Verdict.IMPROVE, Verdict.PASS, Verdict.NEW }) {
+            for (final Comparison c : comparisons) {
+                if (c.getVerdict() == verdict) {
+                    sb.append(String.format("%-8s %-80s %10d %10d %8s  %s%n", verdict, c.getMetric(), c.getBaselineMedian(), c.getCurrentMedian(), c.getBaselineSamples() + "/" + c.getCurrentSamples(), c.getMethod()));
+                }
+            }
+        }
+        try {
+            Files.createDirectories(to.getParent());
+            Files.write(to, sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            LOG.warn("Failed to write baseline report to {}", to, e);
+        }
+    }
+
+    static long percentile(final long[] values, final double percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final int index = (int)Math.ceil(sorted.length * percentile / 100d) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,144 @@
+package org.opennms.smoketest.timing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, thread-safe latency histogram with logarithmic buckets.
+ *
+ * Values up to {@link #LINEAR_LIMIT} milliseconds get a bucket each; above
+ * that, each bucket is {@link #GROWTH} times wider than the last, so
+ * percentiles are accurate to within a few percent no matter how many
+ * values are recorded.  Count, total, min, and max are exact.
+ *
+ * The most recent {@link #RECENT} values are also kept as-is, for statistical
+ * comparisons which need the actual samples.
+ */
+public class Histogram {
+    static final int LINEAR_LIMIT = 16;
+    static final double GROWTH = 1.05;
+    // enough buckets to cover a day in milliseconds; anything longer goes in the last one
+    private static final double MAX_MILLIS = 24d * 60 * 60 * 1000;
+    private static final int BUCKETS = LINEAR_LIMIT + (int)Math.ceil(Math.log(MAX_MILLIS / LINEAR_LIMIT) / Math.log(GROWTH)) + 1;
+    public static final int RECENT = 256;
+
+    private final AtomicLongArray m_buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong m_count = new AtomicLong();
+    private final AtomicLong m_total = new AtomicLong();
+    private final AtomicLong m_min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong m_max = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLongArray m_recent = new AtomicLongArray(RECENT);
+
+    public void record(final long millis) {
+        final long value = Math.max(0, millis);
+        m_buckets.incrementAndGet(bucketFor(value));
+        final long index = m_count.getAndIncrement();
+        m_recent.set((int)(index % RECENT), value);
+        m_total.addAndGet(value);
+        long min;
+        do {
+            min = m_min.get();
+        } while (value < min && !m_min.compareAndSet(min, value));
+        long max;
+        do {
+            max = m_max.get();
+        } while (value > max && !m_max.compareAndSet(max, value));
+    }
+
+    /**
+     * Add everything recorded in another histogram to this one.
+     */
+    public void add(final Histogram other) {
+        final long count = other.getCount();
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            m_buckets.addAndGet(i, other.m_buckets.get(i));
+        }
+        final long[] recent = other.getRecentValues();
+        final long start = m_count.getAndAdd(count) + count - recent.length;
+        for (int i = 0; i < recent.length; i++) {
+            m_recent.set((int)((start + i) % RECENT), recent[i]);
+        }
+        m_total.addAndGet(other.getTotal());
+        final long otherMin = other.getMin();
+        long min;
+        do {
+            min = m_min.get();
+        } while (otherMin < min && !m_min.compareAndSet(min, otherMin));
+        final long otherMax = other.getMax();
+        long max;
+        do {
+            max = m_max.get();
+        } while (otherMax > max && !m_max.compareAndSet(max, otherMax));
+    }
+
+    public long getCount() {
+        return m_count.get();
+    }
+
+    /**
+     * Up to the last {@link #RECENT} values recorded, in no particular order.
+     */
+    public long[] getRecentValues() {
+        final int size = (int)Math.min(m_count.get(), RECENT);
+        final long[] values = new long[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = m_recent.get(i);
+        }
+        return values;
+    }
+
+    public long getTotal() {
+        return m_total.get();
+    }
+
+    public long getMin() {
+        return m_count.get() == 0? 0 : m_min.get();
+    }
+
+    public long getMax() {
+        return m_count.get() == 0? 0 : m_max.get();
+    }
+
+    public double getMean() {
+        final long count = m_count.get();
+        return count == 0? 0 : (double)m_total.get() / count;
+    }
+
+    /**
+     * The value at the given percentile (0-100), as the upper bound of the
+     * bucket it falls in, but never more than the largest value recorded.
+     */
+    public long getPercentile(final double percentile) {
+        final long count = m_count.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long)Math.ceil(count * percentile / 100d));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += m_buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int bucketFor(final long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int)value;
+        }
+        final int bucket = LINEAR_LIMIT + (int)(Math.log((double)value / LINEAR_LIMIT) / Math.log(GROWTH));
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    static long upperBound(final int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        return (long)Math.ceil(LINEAR_LIMIT * Math.pow(GROWTH, bucket - LINEAR_LIMIT + 1)) - 1;
+    }
+}
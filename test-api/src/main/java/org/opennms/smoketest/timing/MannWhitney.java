@@ -0,0 +1,81 @@
+package org.opennms.smoketest.timing;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The Mann-Whitney U test: whether one set of samples tends to be larger than
+ * another, without assuming anything about their distributions.  Timings are
+ * usually skewed with long tails, so this is much less sensitive to a few
+ * outliers than comparing means.
+ *
+ * Uses the normal approximation with a correction for ties, which is accurate
+ * enough once both samples have more than a handful of values.
+ */
+public abstract class MannWhitney {
+
+    /**
+     * The two-sided p-value for the hypothesis that both samples come from the same distribution.
+     */
+    public static double pValue(final long[] a, final long[] b) {
+        final int n1 = a.length;
+        final int n2 = b.length;
+        if (n1 == 0 || n2 == 0) {
+            return 1;
+        }
+
+        // rank all of the values together, giving ties the average of their ranks
+        final long[][] all = new long[n1 + n2][];
+        for (int i = 0; i < n1; i++) {
+            all[i] = new long[] { a[i], 0 };
+        }
+        for (int i = 0; i < n2; i++) {
+            all[n1 + i] = new long[] { b[i], 1 };
+        }
+        Arrays.sort(all, new Comparator<long[]>() {
+            @Override public int compare(final long[] x, final long[] y) {
+                return Long.compare(x[0], y[0]);
+            }
+        });
+
+        final int n = n1 + n2;
+        double rankSumA = 0;
+        double tieCorrection = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j < n && all[j][0] == all[i][0]) {
+                j++;
+            }
+            final double rank = (i + 1 + j) / 2d;
+            for (int k = i; k < j; k++) {
+                if (all[k][1] == 0) {
+                    rankSumA += rank;
+                }
+            }
+            final double t = j - i;
+            tieCorrection += t * t * t - t;
+            i = j;
+        }
+
+        final double u = rankSumA - n1 * (n1 + 1) / 2d;
+        final double mean = n1 * (double)n2 / 2d;
+        final double variance = n1 * (double)n2 / 12d * ((n + 1) - tieCorrection / (n * (double)(n - 1)));
+        if (variance <= 0) {
+            // every value is the same
+            return 1;
+        }
+        // continuity correction
+        final double z = (Math.abs(u - mean) - 0.5) / Math.sqrt(variance);
+        return Math.min(1, 2 * (1 - normalCdf(Math.max(0, z))));
+    }
+
+    /**
+     * The standard normal cumulative distribution function (Zelen &amp; Severo, error &lt; 7.5e-8).
+     */
+    static double normalCdf(final double z) {
+        final double t = 1 / (1 + 0.2316419 * Math.abs(z));
+        final double d = 0.3989422804014327 * Math.exp(-z * z / 2);
+        final double p = d * t * (0.319381530 + t * (-0.356563782 + t * (1.781477937 + t * (-1.821255978 + t * 1.330274429))));
+        return z >= 0? 1 - p : p;
+    }
+}
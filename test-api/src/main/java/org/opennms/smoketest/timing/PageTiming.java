@@ -0,0 +1,171 @@
+package org.opennms.smoketest.timing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Browser-side timings for one page load, from the Navigation Timing and
+ * Resource Timing APIs.  All times are in milliseconds since navigation started;
+ * -1 means the browser didn't report it.
+ */
+public class PageTiming {
+    private final String m_page;
+    private final String m_url;
+    private final long m_timestamp;
+    private final long m_ttfb;
+    private final long m_domContentLoaded;
+    private final long m_load;
+    private final int m_resourceCount;
+    private final long m_transferBytes;
+    private final long m_cachedBytes;
+    private final List<Resource> m_slowestResources;
+
+    public static final class Resource {
+        private final String m_name;
+        private final String m_type;
+        private final long m_duration;
+        private final long m_size;
+
+        public Resource(final String name, final String type, final long duration, final long size) {
+            m_name = name;
+            m_type = type;
+            m_duration = duration;
+            m_size = size;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+        public String getType() {
+            return m_type;
+        }
+        public long getDuration() {
+            return m_duration;
+        }
+        /**
+         * The number of bytes transferred, or 0 if it came from the cache (or the browser doesn't say).
+         */
+        public long getSize() {
+            return m_size;
+        }
+
+        @Override
+        public String toString() {
+            return m_name + " (" + m_type + ", " + m_duration + "ms)";
+        }
+    }
+
+    public PageTiming(final String page, final String url, final long timestamp, final long ttfb, final long domContentLoaded, final long load, final int resourceCount, final List<Resource> slowestResources) {
+        this(page, url, timestamp, ttfb, domContentLoaded, load, resourceCount, -1, -1, slowestResources);
+    }
+
+    public PageTiming(final String page, final String url, final long timestamp, final long ttfb, final long domContentLoaded, final long load, final int resourceCount, final long transferBytes, final long cachedBytes, final List<Resource> slowestResources) {
+        m_page = page;
+        m_url = url;
+        m_timestamp = timestamp;
+        m_ttfb = ttfb;
+        m_domContentLoaded = domContentLoaded;
+        m_load = load;
+        m_resourceCount = resourceCount;
+        m_transferBytes = transferBytes;
+        m_cachedBytes = cachedBytes;
+        m_slowestResources = Collections.unmodifiableList(new ArrayList<>(slowestResources));
+    }
+
+    public String getPage() {
+        return m_page;
+    }
+    public String getUrl() {
+        return m_url;
+    }
+    public long getTimestamp() {
+        return m_timestamp;
+    }
+    /**
+     * Time to the first byte of the response.
+     */
+    public long getTtfb() {
+        return m_ttfb;
+    }
+    public long getDomContentLoaded() {
+        return m_domContentLoaded;
+    }
+    public long getLoad() {
+        return m_load;
+    }
+    public int getResourceCount() {
+        return m_resourceCount;
+    }
+    /**
+     * The bytes transferred over the network for all of the page's resources.
+     */
+    public long getTransferBytes() {
+        return m_transferBytes;
+    }
+    /**
+     * The (encoded) size of the resources that came from the browser's cache
+     * instead; the bytes the cache saved.
+     */
+    public long getCachedBytes() {
+        return m_cachedBytes;
+    }
+    /**
+     * The slowest resources the page loaded, slowest first.
+     */
+    public List<Resource> getSlowestResources() {
+        return m_slowestResources;
+    }
+
+    public JsonObject toJson() {
+        final JsonObject json = new JsonObject();
+        json.addProperty("page", m_page);
+        json.addProperty("url", m_url);
+        json.addProperty("timestamp", m_timestamp);
+        json.addProperty("ttfb", m_ttfb);
+        json.addProperty("domContentLoaded", m_domContentLoaded);
+        json.addProperty("load", m_load);
+        json.addProperty("resourceCount", m_resourceCount);
+        json.addProperty("transferBytes", m_transferBytes);
+        json.addProperty("cachedBytes", m_cachedBytes);
+        final JsonArray resources = new JsonArray();
+        for (final Resource resource : m_slowestResources) {
+            final JsonObject r = new JsonObject();
+            r.addProperty("name", resource.getName());
+            r.addProperty("type", resource.getType());
+            r.addProperty("duration", resource.getDuration());
+            r.addProperty("size", resource.getSize());
+            resources.add(r);
+        }
+        json.add("resources", resources);
+        return json;
+    }
+
+    public static PageTiming fromJson(final JsonObject json) {
+        final List<Resource> resources = new ArrayList<>();
+        if (json.has("resources")) {
+            for (final JsonElement el : json.getAsJsonArray("resources")) {
+                final JsonObject r = el.getAsJsonObject();
+                resources.add(new Resource(getString(r, "name"), getString(r, "type"), getLong(r, "duration"), getLong(r, "size")));
+            }
+        }
+        return new PageTiming(getString(json, "page"), getString(json, "url"), getLong(json, "timestamp"), getLong(json, "ttfb"), getLong(json, "domContentLoaded"), getLong(json, "load"), (int)getLong(json, "resourceCount"), getLong(json, "transferBytes"), getLong(json, "cachedBytes"), resources);
+    }
+
+    private static String getString(final JsonObject json, final String key) {
+        return json.has(key) && !json.get(key).isJsonNull()? json.get(key).getAsString() : null;
+    }
+
+    private static long getLong(final JsonObject json, final String key) {
+        return json.has(key) && !json.get(key).isJsonNull()? json.get(key).getAsLong() : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "PageTiming [page=" + m_page + ", ttfb=" + m_ttfb + ", domContentLoaded=" + m_domContentLoaded + ", load=" + m_load + ", resources=" + m_resourceCount + ", transferBytes=" + m_transferBytes + ", cachedBytes=" + m_cachedBytes + "]";
+    }
+}
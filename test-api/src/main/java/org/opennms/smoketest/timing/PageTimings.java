@@ -0,0 +1,228 @@
+package org.opennms.smoketest.timing;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.opennms.smoketest.wait.Poller;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Reads Navigation Timing and Resource Timing data for the current page from
+ * the browser, and stores it per OpenNMS version and page, one JSON object per
+ * line, in <code>target/page-timings/&lt;version&gt;/&lt;page&gt;.json</code>.
+ */
+public class PageTimings {
+    private static final Logger LOG = LoggerFactory.getLogger(PageTimings.class);
+
+    private static final int SLOWEST_RESOURCES = Integer.getInteger("org.opennms.smoketest.page-timings.resources", 10);
+
+    private static final String TIMING_SCRIPT =
+            "var p = window.performance;" +
+            "if (!p || !p.timing) { return null; }" +
+            "var t = p.timing, start = t.navigationStart;" +
+            "var result = {" +
+            "  url: document.URL," +
+            "  ttfb: t.responseStart > 0 ? t.responseStart - start : -1," +
+            "  domContentLoaded: t.domContentLoadedEventEnd > 0 ? t.domContentLoadedEventEnd - start : -1," +
+            "  load: t.loadEventEnd > 0 ? t.loadEventEnd - start : -1," +
+            "  resourceCount: 0," +
+            "  transferBytes: -1," +
+            "  cachedBytes: -1," +
+            "  resources: []" +
+            "};" +
+            "if (p.getEntriesByType) {" +
+            "  var entries = p.getEntriesByType('resource').slice(0);" +
+            "  entries.sort(function(a, b) { return b.duration - a.duration; });" +
+            "  result.resourceCount = entries.length;" +
+            // transferSize is 0 for a cache hit, and undefined where Resource Timing level 2 isn't supported
+            "  if (entries.length > 0 && entries[0].transferSize !== undefined) {" +
+            "    result.transferBytes = 0; result.cachedBytes = 0;" +
+            "    for (var j = 0; j < entries.length; j++) {" +
+            "      if (entries[j].transferSize > 0) { result.transferBytes += entries[j].transferSize; }" +
+            "      else { result.cachedBytes += entries[j].encodedBodySize || 0; }" +
+            "    }" +
+            "  }" +
+            "  for (var i = 0; i < entries.length && i < arguments[0]; i++) {" +
+            "    result.resources.push({ name: entries[i].name, type: entries[i].initiatorType, duration: Math.round(entries[i].duration), size: entries[i].transferSize || 0 });" +
+            "  }" +
+            "}" +
+            "return result;";
+
+    private final Path m_directory;
+
+    /**
+     * @param version the OpenNMS version the timings are for
+     */
+    public PageTimings(final String version) {
+        this(Paths.get("target", "page-timings", version));
+    }
+
+    public PageTimings(final Path directory) {
+        m_directory = directory;
+    }
+
+    public Path getDirectory() {
+        return m_directory;
+    }
+
+    /**
+     * Read the timings of the page currently loaded in the driver, waiting
+     * briefly for the load event to finish if necessary.
+     *
+     * @return the timings, or <code>null</code> if the browser doesn't support the timing APIs
+     */
+    public static PageTiming capture(final WebDriver driver, final String page) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return null;
+        }
+        final JavascriptExecutor executor = (JavascriptExecutor)driver;
+        final Map<?,?> result = new Poller("PageTimings.capture", 2000).untilQuietly(new Callable<Map<?,?>>() {
+            @Override public Map<?,?> call() throws Exception {
+                final Object ret = executor.executeScript(TIMING_SCRIPT, SLOWEST_RESOURCES);
+                if (ret instanceof Map && toLong(((Map<?,?>)ret).get("load")) >= 0) {
+                    return (Map<?,?>)ret;
+                }
+                return null;
+            }
+        });
+        if (result == null) {
+            LOG.debug("No navigation timing available for {}.", page);
+            return null;
+        }
+
+        final List<PageTiming.Resource> resources = new ArrayList<>();
+        final Object entries = result.get("resources");
+        if (entries instanceof List) {
+            for (final Object entry : (List<?>)entries) {
+                final Map<?,?> r = (Map<?,?>)entry;
+                resources.add(new PageTiming.Resource(String.valueOf(r.get("name")), String.valueOf(r.get("type")), toLong(r.get("duration")), toLong(r.get("size"))));
+            }
+        }
+        return new PageTiming(page, String.valueOf(result.get("url")), System.currentTimeMillis(),
+                              toLong(result.get("ttfb")), toLong(result.get("domContentLoaded")), toLong(result.get("load")),
+                              (int)toLong(result.get("resourceCount")), toLong(result.get("transferBytes")), toLong(result.get("cachedBytes")), resources);
+    }
+
+    /**
+     * Capture the current page's timings and store them.  Failures are logged, not thrown;
+     * timing is never a reason to fail a test.
+     */
+    public PageTiming captureAndStore(final WebDriver driver, final String page) {
+        try {
+            final PageTiming timing = capture(driver, page);
+            if (timing != null) {
+                LOG.debug("{}", timing);
+                record("ttfb", page, timing.getTtfb());
+                record("domContentLoaded", page, timing.getDomContentLoaded());
+                record("load", page, timing.getLoad());
+                store(timing);
+            }
+            return timing;
+        } catch (final WebDriverException e) {
+            LOG.debug("Unable to capture page timings for {}.", page, e);
+            return null;
+        }
+    }
+
+    private static void record(final String step, final String page, final long millis) {
+        // -1 means the browser didn't report it
+        if (millis >= 0) {
+            StepTimings.record(StepTimings.getName(step, page), millis);
+        }
+    }
+
+    public synchronized void store(final PageTiming timing) {
+        final Path file = getFile(timing.getPage());
+        try {
+            Files.createDirectories(file.getParent());
+            try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(timing.toJson().toString());
+                writer.newLine();
+            }
+        } catch (final IOException e) {
+            LOG.warn("Failed to store page timings to {}", file, e);
+        }
+    }
+
+    /**
+     * Store the totals for every page a test captured, one JSON object per line
+     * in <code>tests.json</code>, so runs with and without a warm browser
+     * profile can be compared test by test.
+     */
+    public synchronized void storeTest(final String test, final boolean warmProfile, final List<PageTiming> timings) {
+        long load = 0;
+        long transferBytes = 0;
+        long cachedBytes = 0;
+        for (final PageTiming timing : timings) {
+            load += Math.max(0, timing.getLoad());
+            transferBytes += Math.max(0, timing.getTransferBytes());
+            cachedBytes += Math.max(0, timing.getCachedBytes());
+        }
+        final JsonObject json = new JsonObject();
+        json.addProperty("test", test);
+        json.addProperty("timestamp", System.currentTimeMillis());
+        json.addProperty("warmProfile", warmProfile);
+        json.addProperty("pages", timings.size());
+        json.addProperty("load", load);
+        json.addProperty("transferBytes", transferBytes);
+        json.addProperty("cachedBytes", cachedBytes);
+        LOG.debug("Page totals: {}", json);
+
+        final Path file = m_directory.resolve("tests.json");
+        try {
+            Files.createDirectories(file.getParent());
+            try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(json.toString());
+                writer.newLine();
+            }
+        } catch (final IOException e) {
+            LOG.warn("Failed to store page totals to {}", file, e);
+        }
+    }
+
+    /**
+     * All stored timings for the given page, oldest first.
+     */
+    public synchronized List<PageTiming> load(final String page) throws IOException {
+        final List<PageTiming> timings = new ArrayList<>();
+        final JsonParser parser = new JsonParser();
+        try (final BufferedReader reader = Files.newBufferedReader(getFile(page), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    timings.add(PageTiming.fromJson(parser.parse(line).getAsJsonObject()));
+                }
+            }
+        } catch (final NoSuchFileException e) {
+            return Collections.emptyList();
+        }
+        return timings;
+    }
+
+    private Path getFile(final String page) {
+        return m_directory.resolve(page.replaceAll("[^A-Za-z0-9._-]", "_") + ".json");
+    }
+
+    private static long toLong(final Object value) {
+        return value instanceof Number? ((Number)value).longValue() : -1;
+    }
+}
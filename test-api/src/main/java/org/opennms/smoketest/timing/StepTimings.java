@@ -0,0 +1,178 @@
+package org.opennms.smoketest.timing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency histograms for the high-level test helpers, keyed by helper name
+ * and target (ie, <code>clickMenuItem[Admin/Configure OpenNMS]</code>).
+ *
+ * <pre>
+ * try (final StepTimings.Step step = StepTimings.start("adminPage")) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * When the JVM exits, p50/p95/p99/max for every step are written to
+ * <code>target/step-timings.json</code> and <code>target/step-timings.txt</code>.
+ */
+public abstract class StepTimings {
+    private static final Logger LOG = LoggerFactory.getLogger(StepTimings.class);
+
+    private static final ConcurrentMap<String, Histogram> s_histograms = new ConcurrentHashMap<>();
+    private static final List<Listener> s_listeners = new CopyOnWriteArrayList<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("step-timings-writer") {
+            @Override public void run() {
+                write(Paths.get("target", "step-timings.json"), Paths.get("target", "step-timings.txt"));
+            }
+        });
+    }
+
+    /**
+     * Told about every step when it starts and finishes, on the thread that
+     * runs it.  Listeners must return quickly.
+     */
+    public static interface Listener {
+        void stepStarted(String name, long start);
+        void stepFinished(String name, long start, long end);
+    }
+
+    /**
+     * A running step; closing it records how long it took.
+     */
+    public static final class Step implements AutoCloseable {
+        private final String m_name;
+        private final long m_start = System.currentTimeMillis();
+        private boolean m_closed = false;
+
+        private Step(final String name) {
+            m_name = name;
+            for (final Listener listener : s_listeners) {
+                listener.stepStarted(m_name, m_start);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!m_closed) {
+                m_closed = true;
+                final long end = System.currentTimeMillis();
+                record(m_name, end - m_start);
+                for (final Listener listener : s_listeners) {
+                    listener.stepFinished(m_name, m_start, end);
+                }
+            }
+        }
+    }
+
+    public static void addListener(final Listener listener) {
+        s_listeners.add(listener);
+    }
+
+    public static void removeListener(final Listener listener) {
+        s_listeners.remove(listener);
+    }
+
+    public static Step start(final String helper) {
+        return new Step(helper);
+    }
+
+    public static Step start(final String helper, final Object target) {
+        return new Step(getName(helper, target));
+    }
+
+    public static String getName(final String helper, final Object target) {
+        return target == null? helper : helper + "[" + target + "]";
+    }
+
+    public static void record(final String name, final long millis) {
+        getHistogram(name).record(millis);
+    }
+
+    public static Histogram getHistogram(final String name) {
+        Histogram histogram = s_histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            final Histogram existing = s_histograms.putIfAbsent(name, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * The current histograms, by step name.
+     */
+    public static Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(s_histograms);
+    }
+
+    public static void write(final Path json, final Path table) {
+        final List<String> names = new ArrayList<>(s_histograms.keySet());
+        if (names.isEmpty()) {
+            return;
+        }
+        Collections.sort(names);
+
+        final StringBuilder js = new StringBuilder("{\n");
+        final StringBuilder tb = new StringBuilder();
+        tb.append(String.format("%-80s %8s %10s %8s %8s %8s %8s%n", "step", "count", "total(ms)", "p50", "p95", "p99", "max"));
+        for (int i = 0; i < names.size(); i++) {
+            final String name = names.get(i);
+            final Histogram h = s_histograms.get(name);
+            js.append("  \"").append(escape(name)).append("\": {")
+                .append("\"count\": ").append(h.getCount())
+                .append(", \"total\": ").append(h.getTotal())
+                .append(", \"min\": ").append(h.getMin())
+                .append(", \"p50\": ").append(h.getPercentile(50))
+                .append(", \"p95\": ").append(h.getPercentile(95))
+                .append(", \"p99\": ").append(h.getPercentile(99))
+                .append(", \"max\": ").append(h.getMax())
+                .append(i == names.size() - 1? "}\n" : "},\n");
+            tb.append(String.format("%-80s %8d %10d %8d %8d %8d %8d%n", name, h.getCount(), h.getTotal(), h.getPercentile(50), h.getPercentile(95), h.getPercentile(99), h.getMax()));
+        }
+        js.append("}\n");
+
+        writeFile(json, js.toString());
+        writeFile(table, tb.toString());
+    }
+
+    private static void writeFile(final Path to, final String contents) {
+        try {
+            Files.createDirectories(to.getParent());
+            Files.write(to, contents.getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            LOG.warn("Failed to write step timings to {}", to, e);
+        }
+    }
+
+    private static String escape(final String str) {
+        final StringBuilder sb = new StringBuilder();
+        for (final char c : str.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int)c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package org.opennms.smoketest.wait;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An exponential backoff policy with jitter: poll quickly at first, then
+ * progressively less often, up to a maximum interval.
+ */
+public class Backoff {
+    public static final Backoff DEFAULT = new Backoff(
+            Long.getLong("org.opennms.smoketest.wait.initial-interval", 10l),
+            Long.getLong("org.opennms.smoketest.wait.max-interval", 500l),
+            Double.valueOf(System.getProperty("org.opennms.smoketest.wait.multiplier", "1.5")),
+            Double.valueOf(System.getProperty("org.opennms.smoketest.wait.jitter", "0.2")));
+
+    private final long m_initialInterval;
+    private final long m_maxInterval;
+    private final double m_multiplier;
+    private final double m_jitter;
+
+    /**
+     * @param initialInterval the delay before the second attempt, in milliseconds
+     * @param maxInterval the longest delay between attempts, in milliseconds
+     * @param multiplier how much the delay grows after each attempt
+     * @param jitter the fraction (0.0-1.0) by which each delay is randomly shortened or lengthened
+     */
+    public Backoff(final long initialInterval, final long maxInterval, final double multiplier, final double jitter) {
+        if (initialInterval < 1 || maxInterval < initialInterval || multiplier < 1.0 || jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("Invalid backoff: initialInterval=" + initialInterval + ", maxInterval=" + maxInterval + ", multiplier=" + multiplier + ", jitter=" + jitter);
+        }
+        m_initialInterval = initialInterval;
+        m_maxInterval = maxInterval;
+        m_multiplier = multiplier;
+        m_jitter = jitter;
+    }
+
+    /**
+     * A policy that polls at a fixed interval, like {@link org.openqa.selenium.support.ui.WebDriverWait} does.
+     */
+    public static Backoff fixed(final long interval) {
+        return new Backoff(interval, interval, 1.0, 0.0);
+    }
+
+    public Backoff withMaxInterval(final long maxInterval) {
+        return new Backoff(Math.min(m_initialInterval, maxInterval), maxInterval, m_multiplier, m_jitter);
+    }
+
+    /**
+     * The delay to sleep after the given (0-based) failed attempt, in milliseconds.
+     */
+    public long getDelay(final int attempt) {
+        final double base = Math.min(m_maxInterval, m_initialInterval * Math.pow(m_multiplier, attempt));
+        if (m_jitter == 0.0) {
+            return (long)base;
+        }
+        final double factor = 1.0 - m_jitter + (2.0 * m_jitter * ThreadLocalRandom.current().nextDouble());
+        return Math.max(1l, (long)(base * factor));
+    }
+
+    @Override
+    public String toString() {
+        return "Backoff [initialInterval=" + m_initialInterval + ", maxInterval=" + m_maxInterval + ", multiplier=" + m_multiplier + ", jitter=" + m_jitter + "]";
+    }
+}
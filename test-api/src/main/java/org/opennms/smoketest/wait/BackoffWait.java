@@ -0,0 +1,102 @@
+package org.opennms.smoketest.wait;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.FluentWait;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+
+/**
+ * A {@link WebDriverWait} that polls with the {@link Poller} engine: quickly at
+ * first, then backing off, instead of at a fixed interval.  It can be used
+ * anywhere a {@link WebDriverWait} is expected.
+ */
+public class BackoffWait extends WebDriverWait {
+    private final WebDriver m_driver;
+    private long m_timeoutMillis;
+    private String m_message;
+    private Backoff m_backoff;
+    // set from the superclass constructor, so these must not have initializers
+    private List<Class<? extends Throwable>> m_ignored;
+
+    public BackoffWait(final WebDriver driver, final long timeoutMillis) {
+        this(driver, timeoutMillis, Backoff.DEFAULT);
+    }
+
+    public BackoffWait(final WebDriver driver, final long timeoutMillis, final Backoff backoff) {
+        super(driver, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis));
+        m_driver = driver;
+        m_timeoutMillis = timeoutMillis;
+        m_backoff = backoff;
+    }
+
+    public BackoffWait withBackoff(final Backoff backoff) {
+        m_backoff = backoff;
+        return this;
+    }
+
+    public long getTimeoutMillis() {
+        return m_timeoutMillis;
+    }
+
+    @Override
+    public FluentWait<WebDriver> withTimeout(final long duration, final TimeUnit unit) {
+        m_timeoutMillis = unit.toMillis(duration);
+        return super.withTimeout(duration, unit);
+    }
+
+    @Override
+    public FluentWait<WebDriver> withMessage(final String message) {
+        m_message = message;
+        return super.withMessage(message);
+    }
+
+    @Override
+    public <K extends Throwable> FluentWait<WebDriver> ignoreAll(final Collection<Class<? extends K>> types) {
+        if (m_ignored == null) {
+            m_ignored = new ArrayList<>();
+        }
+        m_ignored.addAll(types);
+        return super.ignoreAll(types);
+    }
+
+    @Override
+    public <V> V until(final Function<? super WebDriver, V> isTrue) {
+        return until(Poller.describe(isTrue), isTrue);
+    }
+
+    /**
+     * Wait for the given condition, recording the wait under the given name.
+     */
+    public <V> V until(final String name, final Function<? super WebDriver, V> isTrue) {
+        final Poller poller = new Poller(name, m_timeoutMillis).withBackoff(m_backoff);
+        if (m_ignored != null) {
+            poller.ignoring(m_ignored);
+        }
+        try {
+            return poller.until(new Callable<V>() {
+                @Override public V call() throws Exception {
+                    return isTrue.apply(m_driver);
+                }
+            });
+        } catch (final PollTimeoutException e) {
+            throw timeoutException((m_message == null? "" : m_message + ": ") + e.getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public void until(final Predicate<WebDriver> isTrue) {
+        until(Poller.describe(isTrue), new Function<WebDriver, Boolean>() {
+            @Override public Boolean apply(final WebDriver driver) {
+                return isTrue.apply(driver);
+            }
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package org.opennms.smoketest.wait;
+
+import org.opennms.smoketest.OpenNMSTestException;
+
+public class PollTimeoutException extends OpenNMSTestException {
+    private static final long serialVersionUID = 1L;
+
+    public PollTimeoutException(final String message, final Throwable lastException) {
+        super(message, lastException);
+    }
+}
@@ -0,0 +1,169 @@
+package org.opennms.smoketest.wait;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.opennms.smoketest.OpenNMSTestException;
+
+/**
+ * The polling engine behind all of the smoke test waits.
+ *
+ * A condition is called until it returns something other than null or
+ * {@link Boolean#FALSE}, sleeping between attempts according to a {@link Backoff}
+ * policy, until an overall deadline passes.  Every wait is recorded in
+ * {@link WaitTimings} under its name.
+ */
+public class Poller {
+    private final String m_name;
+    private final long m_timeoutMillis;
+    private Backoff m_backoff = Backoff.DEFAULT;
+    private final List<Class<? extends Throwable>> m_ignored = new ArrayList<>();
+    private AtomicBoolean m_cancelled;
+
+    public Poller(final String name, final long timeoutMillis) {
+        m_name = name;
+        m_timeoutMillis = timeoutMillis;
+    }
+
+    public Poller withBackoff(final Backoff backoff) {
+        m_backoff = backoff;
+        return this;
+    }
+
+    /**
+     * Treat the given exception, when thrown by the condition, like a false result.
+     */
+    public Poller ignoring(final Class<? extends Throwable> type) {
+        m_ignored.add(type);
+        return this;
+    }
+
+    public Poller ignoring(final List<Class<? extends Throwable>> types) {
+        m_ignored.addAll(types);
+        return this;
+    }
+
+    /**
+     * Stop polling (with a {@link CancellationException}) once the given flag is set.
+     */
+    public Poller cancelledBy(final AtomicBoolean cancelled) {
+        m_cancelled = cancelled;
+        return this;
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    public long getTimeoutMillis() {
+        return m_timeoutMillis;
+    }
+
+    /**
+     * Poll until the condition is met.
+     *
+     * @throws PollTimeoutException if the deadline passes first
+     */
+    public <T> T until(final Callable<T> condition) {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(m_timeoutMillis);
+        Throwable lastException = null;
+        int attempt = 0;
+
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw interrupted(start, attempt, new InterruptedException("Interrupted while waiting for " + m_name));
+            }
+            if (m_cancelled != null && m_cancelled.get()) {
+                WaitTimings.record(m_name, elapsedMillis(start), attempt, false);
+                throw new CancellationException("Cancelled while waiting for " + m_name);
+            }
+            try {
+                final T value = condition.call();
+                if (isSatisfied(value)) {
+                    WaitTimings.record(m_name, elapsedMillis(start), attempt + 1, true);
+                    return value;
+                }
+            } catch (final Throwable t) {
+                if (!isIgnored(t)) {
+                    WaitTimings.record(m_name, elapsedMillis(start), attempt + 1, false);
+                    if (t instanceof RuntimeException) {
+                        throw (RuntimeException)t;
+                    } else if (t instanceof Error) {
+                        throw (Error)t;
+                    }
+                    throw new OpenNMSTestException(t);
+                }
+                lastException = t;
+            }
+
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                WaitTimings.record(m_name, elapsedMillis(start), attempt + 1, false);
+                throw new PollTimeoutException("Timed out after " + m_timeoutMillis + "ms waiting for " + m_name + " (" + (attempt + 1) + " attempts)", lastException);
+            }
+            final long delay = Math.min(m_backoff.getDelay(attempt++), TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+            try {
+                Thread.sleep(delay);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw interrupted(start, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Poll until the condition is met.
+     *
+     * @return the condition's value, or null if the deadline passed first
+     */
+    public <T> T untilQuietly(final Callable<T> condition) {
+        try {
+            return until(condition);
+        } catch (final PollTimeoutException e) {
+            return null;
+        }
+    }
+
+    private OpenNMSTestException interrupted(final long start, final int attempts, final InterruptedException e) {
+        WaitTimings.record(m_name, elapsedMillis(start), attempts, false);
+        return new OpenNMSTestException(e);
+    }
+
+    private boolean isIgnored(final Throwable t) {
+        for (final Class<? extends Throwable> type : m_ignored) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSatisfied(final Object value) {
+        return value != null && !Boolean.FALSE.equals(value);
+    }
+
+    private static long elapsedMillis(final long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * A readable name for a condition: its own description if it has one, otherwise
+     * the method it was declared in (conditions are usually anonymous classes).
+     */
+    public static String describe(final Object condition) {
+        final String description = String.valueOf(condition);
+        final Class<?> clazz = condition == null? null : condition.getClass();
+        if (clazz == null || !description.startsWith(clazz.getName() + "@")) {
+            return description;
+        }
+        if (clazz.getEnclosingMethod() != null) {
+            return clazz.getEnclosingClass().getSimpleName() + "." + clazz.getEnclosingMethod().getName();
+        }
+        return clazz.getName();
+    }
+}
@@ -0,0 +1,123 @@
+package org.opennms.smoketest.wait;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records how long each named wait took, so the waits that dominate a run can
+ * be found.  A summary is written to <code>target/wait-timings.txt</code> when the JVM exits.
+ */
+public abstract class WaitTimings {
+    private static final Logger LOG = LoggerFactory.getLogger(WaitTimings.class);
+
+    private static final ConcurrentMap<String, Timing> s_timings = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("wait-timings-writer") {
+            @Override public void run() {
+                write(Paths.get("target", "wait-timings.txt"));
+            }
+        });
+    }
+
+    public static final class Timing {
+        private final String m_name;
+        private final AtomicLong m_count = new AtomicLong();
+        private final AtomicLong m_timeouts = new AtomicLong();
+        private final AtomicLong m_attempts = new AtomicLong();
+        private final AtomicLong m_totalMillis = new AtomicLong();
+        private final AtomicLong m_maxMillis = new AtomicLong();
+
+        private Timing(final String name) {
+            m_name = name;
+        }
+
+        private void record(final long millis, final int attempts, final boolean satisfied) {
+            m_count.incrementAndGet();
+            if (!satisfied) {
+                m_timeouts.incrementAndGet();
+            }
+            m_attempts.addAndGet(attempts);
+            m_totalMillis.addAndGet(millis);
+            long max;
+            do {
+                max = m_maxMillis.get();
+            } while (millis > max && !m_maxMillis.compareAndSet(max, millis));
+        }
+
+        public String getName() {
+            return m_name;
+        }
+        public long getCount() {
+            return m_count.get();
+        }
+        public long getTimeouts() {
+            return m_timeouts.get();
+        }
+        public long getAttempts() {
+            return m_attempts.get();
+        }
+        public long getTotalMillis() {
+            return m_totalMillis.get();
+        }
+        public long getMaxMillis() {
+            return m_maxMillis.get();
+        }
+    }
+
+    public static void record(final String name, final long millis, final int attempts, final boolean satisfied) {
+        Timing timing = s_timings.get(name);
+        if (timing == null) {
+            timing = new Timing(name);
+            final Timing existing = s_timings.putIfAbsent(name, timing);
+            if (existing != null) {
+                timing = existing;
+            }
+        }
+        timing.record(millis, attempts, satisfied);
+    }
+
+    /**
+     * All recorded timings, the ones that took the most time overall first.
+     */
+    public static List<Timing> getTimings() {
+        final List<Timing> timings = new ArrayList<>(s_timings.values());
+        Collections.sort(timings, new Comparator<Timing>() {
+            @Override public int compare(final Timing a, final Timing b) {
+                return Long.compare(b.getTotalMillis(), a.getTotalMillis());
+            }
+        });
+        return timings;
+    }
+
+    public static void write(final Path to) {
+        final List<Timing> timings = getTimings();
+        if (timings.isEmpty()) {
+            return;
+        }
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-80s %8s %8s %10s %12s %10s%n", "wait", "count", "timeouts", "attempts", "total(ms)", "max(ms)"));
+        for (final Timing timing : timings) {
+            sb.append(String.format("%-80s %8d %8d %10d %12d %10d%n", timing.getName(), timing.getCount(), timing.getTimeouts(), timing.getAttempts(), timing.getTotalMillis(), timing.getMaxMillis()));
+        }
+        try {
+            Files.createDirectories(to.getParent());
+            Files.write(to, sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            LOG.warn("Failed to write wait timings to {}", to, e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.opennms.smoketest.webdriver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs in to the OpenNMS web UI once and hands the resulting session cookie
+ * to each new browser session, instead of filling in the login form for every test.
+ *
+ * The cached session is only replaced when the server rejects it.
+ */
+public class AuthenticationCache {
+    private static final Logger LOG = LoggerFactory.getLogger(AuthenticationCache.class);
+    public static final String SESSION_COOKIE = "JSESSIONID";
+
+    private final String m_baseUrl;
+    private final String m_username;
+    private final String m_password;
+    private Cookie m_sessionCookie;
+
+    public AuthenticationCache(final String baseUrl, final String username, final String password) {
+        m_baseUrl = baseUrl;
+        m_username = username;
+        m_password = password;
+    }
+
+    public synchronized Cookie getSessionCookie() {
+        if (m_sessionCookie == null) {
+            m_sessionCookie = login();
+        }
+        return m_sessionCookie;
+    }
+
+    /**
+     * Seed the cache with a session that was established some other way (ie, a form login).
+     */
+    public synchronized void setSessionCookie(final Cookie cookie) {
+        if (cookie != null) {
+            m_sessionCookie = cookie;
+        }
+    }
+
+    /**
+     * Forget the given session, if it is still the cached one.
+     */
+    public synchronized void invalidate(final Cookie cookie) {
+        if (m_sessionCookie != null && (cookie == null || m_sessionCookie.getValue().equals(cookie.getValue()))) {
+            LOG.debug("Invalidating cached session: {}", m_sessionCookie.getValue());
+            m_sessionCookie = null;
+        }
+    }
+
+    /**
+     * Inject the cached session into the given driver and load the front page.
+     *
+     * @return true if the driver is now logged in, false if a session could not be established
+     */
+    public boolean authenticate(final WebDriver driver) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final Cookie cookie;
+            try {
+                cookie = getSessionCookie();
+            } catch (final Exception e) {
+                LOG.warn("Unable to log in over HTTP.", e);
+                return false;
+            }
+            if (cookie == null) {
+                return false;
+            }
+
+            // cookies can only be added for the domain of the current page
+            driver.get(m_baseUrl + "opennms/login.jsp");
+            driver.manage().deleteCookieNamed(SESSION_COOKIE);
+            driver.manage().addCookie(cookie);
+            driver.get(m_baseUrl + "opennms/index.jsp");
+
+            if (!driver.getCurrentUrl().contains("login.jsp")) {
+                return true;
+            }
+            LOG.debug("Server rejected cached session {}, logging in again.", cookie.getValue());
+            invalidate(cookie);
+        }
+        return false;
+    }
+
+    protected Cookie login() {
+        LOG.debug("Logging in to {} as {}.", m_baseUrl, m_username);
+        final CookieStore cookieStore = new BasicCookieStore();
+        try (final CloseableHttpClient client = HttpClients.custom().setDefaultCookieStore(cookieStore).build()) {
+            final HttpPost post = new HttpPost(m_baseUrl + "opennms/j_spring_security_check");
+            final List<NameValuePair> params = new ArrayList<>();
+            params.add(new BasicNameValuePair("j_username", m_username));
+            params.add(new BasicNameValuePair("j_password", m_password));
+            post.setEntity(new UrlEncodedFormEntity(params, "UTF-8"));
+
+            try (final CloseableHttpResponse response = client.execute(post)) {
+                EntityUtils.consume(response.getEntity());
+                final Header location = response.getFirstHeader("Location");
+                if (location != null && location.getValue().contains("login")) {
+                    LOG.warn("Login failed: redirected to {}", location.getValue());
+                    return null;
+                }
+            }
+
+            for (final org.apache.http.cookie.Cookie cookie : cookieStore.getCookies()) {
+                if (SESSION_COOKIE.equals(cookie.getName())) {
+                    return new Cookie(cookie.getName(), cookie.getValue(), cookie.getPath(), null);
+                }
+            }
+            LOG.warn("Login did not return a {} cookie.", SESSION_COOKIE);
+            return null;
+        } catch (final IOException e) {
+            LOG.warn("Login request failed.", e);
+            return null;
+        }
+    }
+}
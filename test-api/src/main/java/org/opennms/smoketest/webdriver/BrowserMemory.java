@@ -0,0 +1,124 @@
+package org.opennms.smoketest.webdriver;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures how much memory the browsers we've started are using.
+ *
+ * Every browser (and driver server, ie <code>chromedriver</code>) is a child
+ * or grandchild of this JVM, so this adds up the resident set size of all of
+ * our descendant processes.  It reads <code>/proc</code>, so it only works on
+ * Linux; elsewhere {@link #getResidentBytes()} returns -1.
+ */
+public abstract class BrowserMemory {
+    private static final Logger LOG = LoggerFactory.getLogger(BrowserMemory.class);
+
+    private static final Path PROC = Paths.get("/proc");
+    // /proc/<pid>/statm is in pages; 4k everywhere we run
+    private static final long PAGE_SIZE = Long.getLong("org.opennms.smoketest.page-size", 4096);
+
+    /**
+     * The total resident memory of our child processes, in bytes, or -1 if it can't be measured.
+     */
+    public static long getResidentBytes() {
+        final String self = getPid();
+        if (self == null || !Files.isDirectory(PROC)) {
+            return -1;
+        }
+
+        // parent -> children, for every process we can see
+        final Map<String,List<String>> children = new HashMap<>();
+        try (final DirectoryStream<Path> processes = Files.newDirectoryStream(PROC)) {
+            for (final Path process : processes) {
+                final String pid = process.getFileName().toString();
+                if (!isNumeric(pid)) {
+                    continue;
+                }
+                final String ppid = getParent(process);
+                if (ppid != null) {
+                    if (!children.containsKey(ppid)) {
+                        children.put(ppid, new ArrayList<String>());
+                    }
+                    children.get(ppid).add(pid);
+                }
+            }
+        } catch (final IOException e) {
+            LOG.debug("Unable to list processes in {}", PROC, e);
+            return -1;
+        }
+
+        long total = 0;
+        final Set<String> seen = new HashSet<>();
+        final List<String> pending = new ArrayList<>();
+        if (children.containsKey(self)) {
+            pending.addAll(children.get(self));
+        }
+        while (!pending.isEmpty()) {
+            final String pid = pending.remove(pending.size() - 1);
+            if (!seen.add(pid)) {
+                continue;
+            }
+            total += getResident(PROC.resolve(pid));
+            if (children.containsKey(pid)) {
+                pending.addAll(children.get(pid));
+            }
+        }
+        return total;
+    }
+
+    private static String getPid() {
+        // "<pid>@<hostname>" on every JVM we care about
+        final String name = ManagementFactory.getRuntimeMXBean().getName();
+        final int at = name.indexOf('@');
+        return at > 0 && isNumeric(name.substring(0, at))? name.substring(0, at) : null;
+    }
+
+    private static String getParent(final Path process) {
+        try {
+            final String stat = new String(Files.readAllBytes(process.resolve("stat")), StandardCharsets.UTF_8);
+            // the command name is in parentheses and may contain spaces, so skip past it: "pid (comm) state ppid ..."
+            final String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return fields.length > 1? fields[1] : null;
+        } catch (final IOException | RuntimeException e) {
+            // the process went away
+            return null;
+        }
+    }
+
+    private static long getResident(final Path process) {
+        try {
+            final String statm = new String(Files.readAllBytes(process.resolve("statm")), StandardCharsets.UTF_8);
+            final String[] fields = statm.trim().split(" ");
+            return fields.length > 1? Long.parseLong(fields[1]) * PAGE_SIZE : 0;
+        } catch (final IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isNumeric(final String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
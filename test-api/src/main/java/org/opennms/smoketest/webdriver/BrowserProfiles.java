@@ -0,0 +1,231 @@
+package org.opennms.smoketest.webdriver;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Browser profiles whose HTTP cache is already full of the OpenNMS web UI's
+ * scripts, stylesheets, and fonts, so a new browser doesn't download and parse
+ * them all again.
+ *
+ * The first time a browser needs a profile, a template is warmed by starting
+ * a browser on it and visiting the main pages.  Every driver after that gets
+ * its own clone of the template: browsers lock and rewrite their profiles, so
+ * they can't share one.  Clones are made with <code>cp --reflink=auto</code>
+ * where it's available (copy-on-write on filesystems that support it, a plain
+ * copy elsewhere), and with a Java copy otherwise.
+ *
+ * Profiles live in <code>target/browser-profiles</code>; templates are
+ * rebuilt every run, so they never hold assets from an older OpenNMS.
+ *
+ * Drivers are quit in several places (the test, {@link WebDriverPool},
+ * {@link WebDriverPrefetcher}, the expectation crawler), so which clone each
+ * driver uses is kept statically, and each of them calls {@link #release(WebDriver)}.
+ */
+public class BrowserProfiles {
+    private static final Logger LOG = LoggerFactory.getLogger(BrowserProfiles.class);
+
+    // chrome refuses to start on a profile another chrome has locked
+    private static final String[] LOCK_FILES = new String[] { "SingletonLock", "SingletonSocket", "SingletonCookie", "lock", ".parentlock" };
+
+    private static final Map<WebDriver,Path> s_clones = Collections.synchronizedMap(new IdentityHashMap<WebDriver,Path>());
+
+    public static enum Browser { FIREFOX, CHROME }
+
+    /**
+     * Starts a driver which uses the given profile directory.
+     */
+    public static interface Launcher {
+        WebDriver launch(Path profile);
+    }
+
+    /**
+     * Fills a template's cache, ie by logging in and visiting pages.
+     */
+    public static interface Warmer {
+        void warm(WebDriver driver);
+    }
+
+    private final Path m_directory;
+    private final Map<Browser,Path> m_templates = new EnumMap<>(Browser.class);
+    private final Map<Browser,Boolean> m_warmed = new EnumMap<>(Browser.class);
+    private final AtomicInteger m_cloneCount = new AtomicInteger();
+    private volatile Boolean m_reflink = null;
+
+    public BrowserProfiles(final Path directory) {
+        m_directory = directory;
+        Runtime.getRuntime().addShutdownHook(new Thread("browser-profile-cleanup") {
+            @Override public void run() {
+                delete(m_directory.resolve("clones"));
+            }
+        });
+    }
+
+    /**
+     * The warmed template for the given browser, warming it if this is the first
+     * time it's been asked for.  Returns <code>null</code> if warming failed, in
+     * which case browsers should start with an empty profile as before.
+     */
+    public synchronized Path getTemplate(final Browser browser, final Launcher launcher, final Warmer warmer) {
+        if (m_warmed.containsKey(browser)) {
+            return m_warmed.get(browser)? m_templates.get(browser) : null;
+        }
+        final Path template = m_directory.resolve(browser.name().toLowerCase() + "-template");
+        final long start = System.currentTimeMillis();
+        boolean warmed = false;
+        try {
+            delete(template);
+            Files.createDirectories(template);
+            final WebDriver driver = launcher.launch(template);
+            try {
+                warmer.warm(driver);
+                warmed = true;
+            } finally {
+                // the cache is only guaranteed to be on disk once the browser exits
+                driver.quit();
+            }
+            removeLocks(template);
+            LOG.info("Warmed {} profile {} in {}ms ({} MB).", browser, template, System.currentTimeMillis() - start, size(template) >> 20);
+        } catch (final Exception e) {
+            LOG.warn("Failed to warm a {} profile; browsers will start with an empty cache.", browser, e);
+            warmed = false;
+        }
+        m_templates.put(browser, template);
+        m_warmed.put(browser, warmed);
+        return warmed? template : null;
+    }
+
+    /**
+     * A new copy of the given template, for one driver.
+     */
+    public Path clone(final Path template) throws IOException {
+        final Path clone = m_directory.resolve("clones").resolve(template.getFileName() + "-" + m_cloneCount.incrementAndGet());
+        Files.createDirectories(clone.getParent());
+        delete(clone);
+        if (!reflink(template, clone)) {
+            copy(template, clone);
+        }
+        return clone;
+    }
+
+    /**
+     * Remember which clone a driver is using, so it can be deleted when the driver quits.
+     */
+    public static void register(final WebDriver driver, final Path clone) {
+        s_clones.put(driver, clone);
+    }
+
+    /**
+     * Delete the clone the given (quit) driver was using.  Anything not released
+     * is deleted on shutdown.
+     */
+    public static void release(final WebDriver driver) {
+        final Path clone = driver == null? null : s_clones.remove(driver);
+        if (clone != null) {
+            delete(clone);
+        }
+    }
+
+    private boolean reflink(final Path from, final Path to) {
+        if (Boolean.FALSE.equals(m_reflink)) {
+            return false;
+        }
+        try {
+            final Process process = new ProcessBuilder("cp", "-R", "--reflink=auto", from.toString(), to.toString()).redirectErrorStream(true).start();
+            if (process.waitFor() == 0) {
+                m_reflink = true;
+                return true;
+            }
+        } catch (final IOException e) {
+            LOG.debug("Unable to run cp: {}", e.getMessage());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (m_reflink == null) {
+            // not GNU cp, most likely; don't bother trying again
+            LOG.debug("cp --reflink is not available; copying profiles instead.");
+            m_reflink = false;
+        }
+        delete(to);
+        return false;
+    }
+
+    private static void copy(final Path from, final Path to) throws IOException {
+        Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+            @Override public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+            @Override public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    Files.copy(file, to.resolve(from.relativize(file).toString()), StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void removeLocks(final Path profile) throws IOException {
+        for (final String lock : LOCK_FILES) {
+            Files.deleteIfExists(profile.resolve(lock));
+        }
+    }
+
+    private static long size(final Path dir) throws IOException {
+        final long[] size = new long[1];
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                size[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+
+    private static void delete(final Path dir) {
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+                @Override public FileVisitResult visitFileFailed(final Path file, final IOException e) throws IOException {
+                    if (e instanceof NoSuchFileException) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw e;
+                }
+                @Override public FileVisitResult postVisitDirectory(final Path d, final IOException e) throws IOException {
+                    Files.deleteIfExists(d);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            LOG.debug("Failed to delete {}", dir, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BrowserProfiles [directory=" + m_directory + ", warmed=" + m_warmed + ", clones=" + m_cloneCount + "]";
+    }
+}
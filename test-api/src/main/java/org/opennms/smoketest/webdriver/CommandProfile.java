@@ -0,0 +1,219 @@
+package org.opennms.smoketest.webdriver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts and times the WebDriver commands issued through a {@link ProfilingWebDriver},
+ * and keeps track of commands that were redundant:
+ *
+ * <ul>
+ * <li>setting session state (timeouts, window size/position) to the value it already has</li>
+ * <li>repeating a read (<code>get*</code>, <code>find*</code>, <code>is*</code>) with the
+ *     same arguments, on the same object, immediately after the first one</li>
+ * </ul>
+ */
+public class CommandProfile {
+    private static final Logger LOG = LoggerFactory.getLogger(CommandProfile.class);
+
+    // commands that set session-wide state, where repeating the last value does nothing
+    private static final Set<String> SETTERS = new HashSet<>(Arrays.asList(
+            "Timeouts.implicitlyWait",
+            "Timeouts.pageLoadTimeout",
+            "Timeouts.setScriptTimeout",
+            "Window.setSize",
+            "Window.setPosition"
+    ));
+
+    private final String m_name;
+    private final ConcurrentMap<String, Stat> m_stats = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> m_redundant = new ConcurrentHashMap<>();
+    private final Map<String, List<Object>> m_lastSet = new HashMap<>();
+    private String m_lastCommand;
+    private Object m_lastTarget;
+    private List<Object> m_lastArgs;
+
+    public CommandProfile(final String name) {
+        m_name = name;
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    public static final class Stat {
+        private final String m_command;
+        private final AtomicLong m_count = new AtomicLong();
+        private final AtomicLong m_failures = new AtomicLong();
+        private final AtomicLong m_totalNanos = new AtomicLong();
+        private final AtomicLong m_maxNanos = new AtomicLong();
+
+        private Stat(final String command) {
+            m_command = command;
+        }
+
+        private void record(final long nanos, final boolean failed) {
+            m_count.incrementAndGet();
+            if (failed) {
+                m_failures.incrementAndGet();
+            }
+            m_totalNanos.addAndGet(nanos);
+            long max;
+            do {
+                max = m_maxNanos.get();
+            } while (nanos > max && !m_maxNanos.compareAndSet(max, nanos));
+        }
+
+        public String getCommand() {
+            return m_command;
+        }
+        public long getCount() {
+            return m_count.get();
+        }
+        public long getFailures() {
+            return m_failures.get();
+        }
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(m_totalNanos.get());
+        }
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(m_maxNanos.get());
+        }
+        public double getMeanMillis() {
+            final long count = m_count.get();
+            return count == 0? 0 : m_totalNanos.get() / 1000000d / count;
+        }
+    }
+
+    /**
+     * Called before a command is issued, to check whether it is redundant.
+     */
+    public synchronized void before(final String command, final Object target, final Object[] args) {
+        final List<Object> argList = args == null? Collections.emptyList() : Arrays.asList(args);
+        if (SETTERS.contains(command)) {
+            if (argList.equals(m_lastSet.get(command))) {
+                redundant(command + " (same value)");
+            }
+            m_lastSet.put(command, argList);
+        } else if (command.equals(m_lastCommand) && target == m_lastTarget && argList.equals(m_lastArgs) && isRead(command)) {
+            redundant(command + " (repeated)");
+        }
+        m_lastCommand = command;
+        m_lastTarget = target;
+        m_lastArgs = argList;
+    }
+
+    /**
+     * Called after a command completes (or fails).
+     */
+    public void after(final String command, final long nanos, final boolean failed) {
+        Stat stat = m_stats.get(command);
+        if (stat == null) {
+            stat = new Stat(command);
+            final Stat existing = m_stats.putIfAbsent(command, stat);
+            if (existing != null) {
+                stat = existing;
+            }
+        }
+        stat.record(nanos, failed);
+    }
+
+    private void redundant(final String description) {
+        LOG.trace("redundant command: {}", description);
+        AtomicLong count = m_redundant.get(description);
+        if (count == null) {
+            count = new AtomicLong();
+            final AtomicLong existing = m_redundant.putIfAbsent(description, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private static boolean isRead(final String command) {
+        final String method = command.substring(command.indexOf('.') + 1);
+        return method.startsWith("get") || method.startsWith("find") || method.startsWith("is");
+    }
+
+    /**
+     * All commands, the ones that took the most time overall first.
+     */
+    public List<Stat> getStats() {
+        final List<Stat> stats = new ArrayList<>(m_stats.values());
+        Collections.sort(stats, new Comparator<Stat>() {
+            @Override public int compare(final Stat a, final Stat b) {
+                return Long.compare(b.m_totalNanos.get(), a.m_totalNanos.get());
+            }
+        });
+        return stats;
+    }
+
+    public Map<String, Long> getRedundantCommands() {
+        final Map<String, Long> ret = new HashMap<>();
+        for (final Map.Entry<String, AtomicLong> entry : m_redundant.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().get());
+        }
+        return ret;
+    }
+
+    public long getCommandCount() {
+        long count = 0;
+        for (final Stat stat : m_stats.values()) {
+            count += stat.getCount();
+        }
+        return count;
+    }
+
+    public void write(final Path to) {
+        final List<Stat> stats = getStats();
+        long totalCount = 0;
+        long totalMillis = 0;
+        final StringBuilder sb = new StringBuilder();
+        sb.append(m_name).append(String.format("%n%n"));
+        sb.append(String.format("%-40s %8s %8s %12s %10s %10s%n", "command", "count", "failed", "total(ms)", "mean(ms)", "max(ms)"));
+        for (final Stat stat : stats) {
+            sb.append(String.format("%-40s %8d %8d %12d %10.1f %10d%n", stat.getCommand(), stat.getCount(), stat.getFailures(), stat.getTotalMillis(), stat.getMeanMillis(), stat.getMaxMillis()));
+            totalCount += stat.getCount();
+            totalMillis += stat.getTotalMillis();
+        }
+        sb.append(String.format("%-40s %8d %8s %12d%n", "total", totalCount, "", totalMillis));
+
+        final Map<String, Long> redundant = getRedundantCommands();
+        if (!redundant.isEmpty()) {
+            sb.append(String.format("%nredundant commands:%n"));
+            for (final Map.Entry<String, Long> entry : redundant.entrySet()) {
+                sb.append(String.format("%-60s %8d%n", entry.getKey(), entry.getValue()));
+            }
+        }
+        try {
+            Files.createDirectories(to.getParent());
+            Files.write(to, sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            LOG.warn("Failed to write WebDriver command profile to {}", to, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CommandProfile [name=" + m_name + ", commands=" + getCommandCount() + ", redundant=" + m_redundant.size() + "]";
+    }
+}
@@ -0,0 +1,124 @@
+package org.opennms.smoketest.webdriver;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.interactions.HasInputDevices;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link WebDriver} which doesn't start a browser until it's first used.
+ *
+ * Tests that only talk to the REST API never touch the driver, so they never
+ * pay for a browser.  The proxy implements the interfaces tests cast drivers
+ * to ({@link JavascriptExecutor}, {@link TakesScreenshot}, {@link HasInputDevices},
+ * and {@link HasCapabilities}); calling one the real driver doesn't implement
+ * throws {@link UnsupportedOperationException}.
+ */
+public abstract class LazyWebDriver {
+    private static final Logger LOG = LoggerFactory.getLogger(LazyWebDriver.class);
+
+    private static final Class<?>[] INTERFACES = new Class<?>[] {
+        WebDriver.class, JavascriptExecutor.class, TakesScreenshot.class, HasInputDevices.class, HasCapabilities.class
+    };
+
+    /**
+     * Prepares a newly-started driver (window size, login, etc.) before it's used.
+     */
+    public static interface Initializer {
+        void initialize(WebDriver driver);
+    }
+
+    /**
+     * Gets rid of a driver whose initializer failed, the same way the driver
+     * would be got rid of after a failed test (ie, evicting it from a pool, or
+     * quitting it and releasing its profile).
+     */
+    public static interface Disposer {
+        void dispose(WebDriver driver);
+    }
+
+    public static WebDriver create(final WebDriverFactory factory, final Initializer initializer, final Disposer disposer) {
+        return (WebDriver)Proxy.newProxyInstance(LazyWebDriver.class.getClassLoader(), INTERFACES, new LazyHandler(factory, initializer, disposer));
+    }
+
+    public static boolean isLazy(final Object obj) {
+        return obj != null && Proxy.isProxyClass(obj.getClass()) && Proxy.getInvocationHandler(obj) instanceof LazyHandler;
+    }
+
+    /**
+     * The driver behind the given one, or <code>null</code> if it's lazy and
+     * hasn't been started.  Drivers that aren't lazy are returned as-is.
+     */
+    public static WebDriver getStarted(final WebDriver driver) {
+        return isLazy(driver)? ((LazyHandler)Proxy.getInvocationHandler(driver)).m_target : driver;
+    }
+
+    private static final class LazyHandler implements InvocationHandler {
+        private final WebDriverFactory m_factory;
+        private final Initializer m_initializer;
+        private final Disposer m_disposer;
+        private volatile WebDriver m_target;
+
+        private LazyHandler(final WebDriverFactory factory, final Initializer initializer, final Disposer disposer) {
+            m_factory = factory;
+            m_initializer = initializer;
+            m_disposer = disposer;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                // equals, hashCode, toString; don't start a browser for these
+                if ("equals".equals(method.getName())) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(method.getName())) {
+                    return System.identityHashCode(proxy);
+                }
+                final WebDriver target = m_target;
+                return "LazyWebDriver[" + (target == null? "not started" : target) + "]";
+            }
+            if (m_target == null && "quit".equals(method.getName())) {
+                // nothing to quit
+                return null;
+            }
+            final WebDriver target = getTarget();
+            if (!method.getDeclaringClass().isInstance(target)) {
+                throw new UnsupportedOperationException(target + " does not implement " + method.getDeclaringClass().getName());
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private synchronized WebDriver getTarget() {
+            if (m_target == null) {
+                LOG.debug("Starting driver on first use.");
+                final WebDriver driver = m_factory.createDriver();
+                // the initializer uses the driver too, so make it available before calling it
+                m_target = driver;
+                try {
+                    m_initializer.initialize(driver);
+                } catch (final RuntimeException | Error e) {
+                    m_target = null;
+                    try {
+                        m_disposer.dispose(driver);
+                    } catch (final Exception de) {
+                        LOG.debug("Failed to dispose of driver {}.", driver, de);
+                    }
+                    throw e;
+                }
+            }
+            return m_target;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.opennms.smoketest.webdriver;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Wraps a {@link WebDriver} (and the elements, windows, timeouts, etc. it
+ * returns) in proxies that record every command in a {@link CommandProfile}.
+ *
+ * The proxies implement all of the interfaces of the wrapped objects, so they
+ * can still be cast to {@link org.openqa.selenium.JavascriptExecutor},
+ * {@link org.openqa.selenium.TakesScreenshot}, and so on, but not to concrete
+ * driver classes.  Wrapped arguments are unwrapped before they're passed on.
+ */
+public abstract class ProfilingWebDriver {
+    private static final String SELENIUM_PACKAGE = "org.openqa.selenium";
+
+    public static WebDriver wrap(final WebDriver driver, final CommandProfile profile) {
+        return (WebDriver)wrapObject(unwrap(driver), profile);
+    }
+
+    /**
+     * Get the real driver back, if the given one is wrapped.
+     */
+    public static WebDriver unwrap(final WebDriver driver) {
+        return (WebDriver)unwrapObject(driver);
+    }
+
+    public static boolean isWrapped(final Object obj) {
+        return obj != null && Proxy.isProxyClass(obj.getClass()) && Proxy.getInvocationHandler(obj) instanceof ProfilingHandler;
+    }
+
+    /**
+     * The profile the given driver is recording to, or <code>null</code> if it isn't wrapped.
+     */
+    public static CommandProfile getProfile(final WebDriver driver) {
+        return isWrapped(driver)? ((ProfilingHandler)Proxy.getInvocationHandler(driver)).m_profile : null;
+    }
+
+    private static Object wrapObject(final Object target, final CommandProfile profile) {
+        final Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass()) {
+            addInterfaces(c, interfaces);
+        }
+        return Proxy.newProxyInstance(target.getClass().getClassLoader(), interfaces.toArray(new Class<?>[interfaces.size()]), new ProfilingHandler(target, profile));
+    }
+
+    private static void addInterfaces(final Class<?> c, final Set<Class<?>> interfaces) {
+        for (final Class<?> i : c.getInterfaces()) {
+            if (interfaces.add(i)) {
+                addInterfaces(i, interfaces);
+            }
+        }
+    }
+
+    private static Object unwrapObject(final Object obj) {
+        if (isWrapped(obj)) {
+            return ((ProfilingHandler)Proxy.getInvocationHandler(obj)).m_target;
+        } else if (obj instanceof List) {
+            final List<Object> ret = new ArrayList<>();
+            for (final Object o : (List<?>)obj) {
+                ret.add(unwrapObject(o));
+            }
+            return ret;
+        } else if (obj instanceof Map) {
+            final Map<Object,Object> ret = new LinkedHashMap<>();
+            for (final Map.Entry<?,?> entry : ((Map<?,?>)obj).entrySet()) {
+                ret.put(entry.getKey(), unwrapObject(entry.getValue()));
+            }
+            return ret;
+        } else if (obj instanceof Object[]) {
+            final Object[] array = ((Object[])obj).clone();
+            for (int i = 0; i < array.length; i++) {
+                array[i] = unwrapObject(array[i]);
+            }
+            return array;
+        }
+        return obj;
+    }
+
+    private static final class ProfilingHandler implements InvocationHandler {
+        private final Object m_target;
+        private final CommandProfile m_profile;
+
+        private ProfilingHandler(final Object target, final CommandProfile profile) {
+            m_target = target;
+            m_profile = profile;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            final Object[] realArgs = args == null? null : (Object[])unwrapObject(args);
+            if (method.getDeclaringClass() == Object.class) {
+                // equals, hashCode, toString; not WebDriver commands
+                return method.invoke(m_target, realArgs);
+            }
+
+            final String command = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+            m_profile.before(command, m_target, realArgs);
+            final long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                final Object ret = method.invoke(m_target, realArgs);
+                failed = false;
+                return wrapResult(method, ret);
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                m_profile.after(command, System.nanoTime() - start, failed);
+            }
+        }
+
+        private Object wrapResult(final Method method, final Object ret) {
+            if (ret == null) {
+                return null;
+            }
+            final Class<?> type = method.getReturnType();
+            if (type.isInterface() && type.getName().startsWith(SELENIUM_PACKAGE) && !isWrapped(ret)) {
+                return wrapObject(ret, m_profile);
+            } else if (List.class.isAssignableFrom(type) && method.getName().startsWith("find")) {
+                // findElements
+                final List<Object> wrapped = new ArrayList<>();
+                for (final Object o : (Collection<?>)ret) {
+                    wrapped.add(o == null || !o.getClass().getName().startsWith(SELENIUM_PACKAGE)? o : wrapObject(o, m_profile));
+                }
+                return wrapped;
+            }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.opennms.smoketest.webdriver;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Creates a new, fully-started {@link WebDriver} session.
+ */
+public interface WebDriverFactory {
+    WebDriver createDriver();
+}
@@ -0,0 +1,263 @@
+package org.opennms.smoketest.webdriver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.NoAlertPresentException;
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of started {@link WebDriver} sessions which are leased to tests and
+ * reset between leases, rather than being started and quit for every test.
+ *
+ * Drivers that fail a health check, fail to reset, or are explicitly evicted
+ * are quit and replaced in the background.
+ */
+public class WebDriverPool {
+    private static final Logger LOG = LoggerFactory.getLogger(WebDriverPool.class);
+
+    private static final Map<String, WebDriverPool> s_pools = new ConcurrentHashMap<>();
+
+    private static final ExecutorService s_executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger m_count = new AtomicInteger();
+        @Override public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "webdriver-pool-" + m_count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("webdriver-pool-shutdown") {
+            @Override public void run() {
+                for (final WebDriverPool pool : s_pools.values()) {
+                    pool.shutdown();
+                }
+            }
+        });
+    }
+
+    private final String m_key;
+    private final int m_maxIdle;
+    private final long m_leaseTimeout;
+    private final WebDriverFactory m_factory;
+    private final BlockingQueue<WebDriver> m_idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger m_pending = new AtomicInteger();
+    private volatile boolean m_shutdown = false;
+
+    private final AtomicLong m_leases = new AtomicLong();
+    private final AtomicLong m_reused = new AtomicLong();
+    private final AtomicLong m_created = new AtomicLong();
+    private final AtomicLong m_evictions = new AtomicLong();
+    private final AtomicLong m_waitMillis = new AtomicLong();
+
+    protected WebDriverPool(final String key, final int maxIdle, final long leaseTimeout, final WebDriverFactory factory) {
+        m_key = key;
+        m_maxIdle = maxIdle;
+        m_leaseTimeout = leaseTimeout;
+        m_factory = factory;
+    }
+
+    /**
+     * Get the pool for the given key, creating it if necessary.  Drivers are only
+     * shared between callers that use the same key, so the key should encode
+     * anything (browser, capabilities) that makes one driver unsuitable for another.
+     */
+    public static WebDriverPool getPool(final String key, final int maxIdle, final long leaseTimeout, final WebDriverFactory factory) {
+        synchronized (s_pools) {
+            WebDriverPool pool = s_pools.get(key);
+            if (pool == null) {
+                LOG.debug("Creating WebDriver pool: key={}, maxIdle={}", key, maxIdle);
+                pool = new WebDriverPool(key, maxIdle, leaseTimeout, factory);
+                s_pools.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    public WebDriver lease() {
+        final long start = System.currentTimeMillis();
+        try {
+            m_leases.incrementAndGet();
+            while (true) {
+                WebDriver driver = m_idle.poll();
+                if (driver == null && m_pending.get() > 0) {
+                    // a replacement is already being started, wait for it rather than starting another
+                    try {
+                        driver = m_idle.poll(m_leaseTimeout, TimeUnit.MILLISECONDS);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (driver == null) {
+                    return create();
+                }
+                if (isHealthy(driver)) {
+                    m_reused.incrementAndGet();
+                    return driver;
+                }
+                LOG.debug("Discarding unhealthy driver from pool {}: {}", m_key, driver);
+                evict(driver);
+            }
+        } finally {
+            m_waitMillis.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Reset the driver and return it to the pool.  If the driver can not be
+     * reset, or the pool already has enough idle drivers, it is quit instead.
+     */
+    public void release(final WebDriver driver) {
+        if (driver == null) {
+            return;
+        }
+        if (m_shutdown || !reset(driver)) {
+            evict(driver);
+            return;
+        }
+        if (m_idle.size() >= m_maxIdle || !m_idle.offer(driver)) {
+            quit(driver);
+        }
+    }
+
+    /**
+     * Quit the driver in the background and start a replacement for it.
+     */
+    public void evict(final WebDriver driver) {
+        m_evictions.incrementAndGet();
+        if (driver != null) {
+            s_executor.execute(new Runnable() {
+                @Override public void run() {
+                    quit(driver);
+                }
+            });
+        }
+        replenish();
+    }
+
+    public void shutdown() {
+        m_shutdown = true;
+        LOG.info("Shutting down WebDriver pool {}: {}", m_key, this);
+        final List<WebDriver> drivers = new ArrayList<>();
+        m_idle.drainTo(drivers);
+        for (final WebDriver driver : drivers) {
+            quit(driver);
+        }
+    }
+
+    public long getLeaseCount() {
+        return m_leases.get();
+    }
+
+    public long getReuseCount() {
+        return m_reused.get();
+    }
+
+    public long getCreatedCount() {
+        return m_created.get();
+    }
+
+    public long getEvictionCount() {
+        return m_evictions.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return m_waitMillis.get();
+    }
+
+    public int getIdleCount() {
+        return m_idle.size();
+    }
+
+    private WebDriver create() {
+        final WebDriver driver = m_factory.createDriver();
+        m_created.incrementAndGet();
+        LOG.debug("Created driver for pool {}: {}", m_key, driver);
+        return driver;
+    }
+
+    private void replenish() {
+        if (m_shutdown || m_idle.size() + m_pending.get() >= m_maxIdle) {
+            return;
+        }
+        m_pending.incrementAndGet();
+        s_executor.execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    final WebDriver driver = create();
+                    if (m_shutdown || !m_idle.offer(driver)) {
+                        quit(driver);
+                    }
+                } catch (final Exception e) {
+                    LOG.warn("Failed to start replacement driver for pool {}.", m_key, e);
+                } finally {
+                    m_pending.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    private static boolean isHealthy(final WebDriver driver) {
+        try {
+            return driver.getWindowHandle() != null;
+        } catch (final Exception e) {
+            LOG.debug("Driver health check failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean reset(final WebDriver driver) {
+        try {
+            try {
+                driver.switchTo().alert().dismiss();
+            } catch (final NoAlertPresentException e) {
+                // no alert, good
+            }
+            final Set<String> handles = driver.getWindowHandles();
+            final Iterator<String> it = handles.iterator();
+            final String keep = it.next();
+            while (it.hasNext()) {
+                driver.switchTo().window(it.next());
+                driver.close();
+            }
+            driver.switchTo().window(keep);
+            driver.switchTo().defaultContent();
+            // cookies can only be cleared for the current domain, so do it before leaving the page
+            driver.manage().deleteAllCookies();
+            driver.get("about:blank");
+            return true;
+        } catch (final Exception e) {
+            LOG.debug("Failed to reset driver {}: {}", driver, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void quit(final WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (final Exception e) {
+            LOG.debug("Failed to quit driver {}.", driver, e);
+        }
+        BrowserProfiles.release(driver);
+    }
+
+    @Override
+    public String toString() {
+        return "WebDriverPool [key=" + m_key + ", leases=" + m_leases + ", reused=" + m_reused + ", created=" + m_created + ", evictions=" + m_evictions + ", idle=" + m_idle.size() + ", waitMillis=" + m_waitMillis + "]";
+    }
+}
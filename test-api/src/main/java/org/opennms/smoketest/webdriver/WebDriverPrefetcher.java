@@ -0,0 +1,244 @@
+package org.opennms.smoketest.webdriver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts fresh {@link WebDriver} sessions in the background, so the next test's
+ * browser is launched and logged in while the current test is still running.
+ *
+ * Unlike a {@link WebDriverPool}, drivers are never reused: each one is handed
+ * to a single test and quit afterwards, and taking one starts another.  Up to
+ * <code>depth</code> drivers are kept ready, unless the browsers we've started
+ * are already using more than <code>maxMemory</code> bytes (see {@link BrowserMemory}).
+ */
+public class WebDriverPrefetcher {
+    private static final Logger LOG = LoggerFactory.getLogger(WebDriverPrefetcher.class);
+
+    private static final Map<String, WebDriverPrefetcher> s_prefetchers = new ConcurrentHashMap<>();
+
+    private static final ExecutorService s_executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger m_count = new AtomicInteger();
+        @Override public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "webdriver-prefetch-" + m_count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("webdriver-prefetch-shutdown") {
+            @Override public void run() {
+                for (final WebDriverPrefetcher prefetcher : s_prefetchers.values()) {
+                    prefetcher.shutdown();
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets a newly-started driver ready for a test (window size, login, etc.)
+     */
+    public static interface Preparer {
+        /**
+         * @return false if the driver could not be prepared, and should be thrown away
+         */
+        boolean prepare(WebDriver driver);
+    }
+
+    private final String m_key;
+    private final int m_depth;
+    private final long m_maxMemory;
+    private final long m_takeTimeout;
+    private final WebDriverFactory m_factory;
+    private final Preparer m_preparer;
+    private final BlockingQueue<WebDriver> m_ready = new LinkedBlockingQueue<>();
+    private final AtomicInteger m_pending = new AtomicInteger();
+    private final AtomicBoolean m_overMemory = new AtomicBoolean(false);
+    private volatile boolean m_shutdown = false;
+
+    private final AtomicLong m_takes = new AtomicLong();
+    private final AtomicLong m_hits = new AtomicLong();
+    private final AtomicLong m_waits = new AtomicLong();
+    private final AtomicLong m_misses = new AtomicLong();
+    private final AtomicLong m_waitMillis = new AtomicLong();
+    private final AtomicLong m_started = new AtomicLong();
+    private final AtomicLong m_failed = new AtomicLong();
+    private final AtomicLong m_skippedForMemory = new AtomicLong();
+
+    protected WebDriverPrefetcher(final String key, final int depth, final long maxMemory, final long takeTimeout, final WebDriverFactory factory, final Preparer preparer) {
+        m_key = key;
+        m_depth = depth;
+        m_maxMemory = maxMemory;
+        m_takeTimeout = takeTimeout;
+        m_factory = factory;
+        m_preparer = preparer;
+    }
+
+    /**
+     * Get the prefetcher for the given key, creating it (and starting the first
+     * drivers) if necessary.  As with {@link WebDriverPool#getPool}, drivers are
+     * only handed to callers that use the same key.
+     */
+    public static WebDriverPrefetcher getPrefetcher(final String key, final int depth, final long maxMemory, final long takeTimeout, final WebDriverFactory factory, final Preparer preparer) {
+        synchronized (s_prefetchers) {
+            WebDriverPrefetcher prefetcher = s_prefetchers.get(key);
+            if (prefetcher == null) {
+                LOG.debug("Creating WebDriver prefetcher: key={}, depth={}, maxMemory={}", key, depth, maxMemory);
+                prefetcher = new WebDriverPrefetcher(key, depth, maxMemory, takeTimeout, factory, preparer);
+                s_prefetchers.put(key, prefetcher);
+                prefetcher.fill();
+            }
+            return prefetcher;
+        }
+    }
+
+    /**
+     * Take a prepared driver, waiting for one that's being started if none are
+     * ready.  Returns <code>null</code> if there's nothing to wait for (ie, the
+     * memory cap was hit, or the background start failed); the caller should
+     * start its own driver.
+     */
+    public WebDriver take() {
+        final long start = System.currentTimeMillis();
+        m_takes.incrementAndGet();
+        try {
+            WebDriver driver = m_ready.poll();
+            if (driver != null) {
+                m_hits.incrementAndGet();
+                return driver;
+            }
+            if (m_pending.get() > 0) {
+                m_waits.incrementAndGet();
+                // a start that fails never shows up, so stop waiting once nothing is pending
+                final long giveUp = start + m_takeTimeout;
+                try {
+                    while (driver == null && m_pending.get() > 0 && System.currentTimeMillis() < giveUp) {
+                        driver = m_ready.poll(250, TimeUnit.MILLISECONDS);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (driver == null) {
+                m_misses.incrementAndGet();
+            }
+            return driver;
+        } finally {
+            m_waitMillis.addAndGet(System.currentTimeMillis() - start);
+            fill();
+        }
+    }
+
+    public void shutdown() {
+        m_shutdown = true;
+        LOG.info("Shutting down WebDriver prefetcher {}: {}", m_key, this);
+        final List<WebDriver> drivers = new ArrayList<>();
+        m_ready.drainTo(drivers);
+        for (final WebDriver driver : drivers) {
+            quit(driver);
+        }
+    }
+
+    public long getTakeCount() {
+        return m_takes.get();
+    }
+
+    /**
+     * How many takes found a driver ready and didn't wait at all.
+     */
+    public long getReadyCount() {
+        return m_hits.get();
+    }
+
+    /**
+     * How many takes had to wait for a driver that was still starting.
+     */
+    public long getWaitCount() {
+        return m_waits.get();
+    }
+
+    /**
+     * How many takes got nothing, and left the caller to start its own driver.
+     */
+    public long getMissCount() {
+        return m_misses.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return m_waitMillis.get();
+    }
+
+    public int getReadySize() {
+        return m_ready.size();
+    }
+
+    private synchronized void fill() {
+        while (!m_shutdown && m_ready.size() + m_pending.get() < m_depth) {
+            if (m_maxMemory > 0) {
+                final long used = BrowserMemory.getResidentBytes();
+                if (used >= m_maxMemory) {
+                    m_skippedForMemory.incrementAndGet();
+                    if (m_overMemory.compareAndSet(false, true)) {
+                        LOG.info("Browsers are using {} MB (limit {} MB); not starting more for prefetcher {}.", used >> 20, m_maxMemory >> 20, m_key);
+                    }
+                    return;
+                }
+                m_overMemory.set(false);
+            }
+            m_pending.incrementAndGet();
+            s_executor.execute(new Runnable() {
+                @Override public void run() {
+                    try {
+                        final WebDriver driver = m_factory.createDriver();
+                        m_started.incrementAndGet();
+                        if (!m_preparer.prepare(driver)) {
+                            m_failed.incrementAndGet();
+                            LOG.debug("Failed to prepare prefetched driver {}, discarding it.", driver);
+                            quit(driver);
+                        } else if (m_shutdown || !m_ready.offer(driver)) {
+                            quit(driver);
+                        } else {
+                            LOG.debug("Prefetched driver for {}: {}", m_key, driver);
+                        }
+                    } catch (final Exception e) {
+                        m_failed.incrementAndGet();
+                        LOG.warn("Failed to prefetch driver for {}.", m_key, e);
+                    } finally {
+                        m_pending.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    private static void quit(final WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (final Exception e) {
+            LOG.debug("Failed to quit driver {}.", driver, e);
+        }
+        BrowserProfiles.release(driver);
+    }
+
+    @Override
+    public String toString() {
+        return "WebDriverPrefetcher [key=" + m_key + ", depth=" + m_depth + ", takes=" + m_takes + ", ready=" + m_hits + ", waited=" + m_waits + ", missed=" + m_misses
+                + ", waitMillis=" + m_waitMillis + ", started=" + m_started + ", failed=" + m_failed + ", skippedForMemory=" + m_skippedForMemory + "]";
+    }
+}
@@ -0,0 +1,70 @@
+package org.opennms.smoketest.expectations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ExpectationCrawlerTest {
+    private static List<Expectation> read(final String... lines) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (final String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return ExpectationCrawler.readSiteMap(new BufferedReader(new StringReader(sb.toString())));
+    }
+
+    @Test
+    public void testReadSiteMap() throws Exception {
+        final List<Expectation> expectations = read(
+            "# start URL\ttarget\t[and|or]\ttext\ttext...",
+            "",
+            "opennms/index.jsp\tlink=Node List\tor\tNodes\tNode List",
+            "  opennms/admin/index.jsp \t link=Configure Users \t and \t Users \t Groups  "
+        );
+        assertEquals(2, expectations.size());
+
+        final Expectation nodes = expectations.get(0);
+        assertEquals("opennms/index.jsp", nodes.getStartUrl());
+        assertEquals("link=Node List", nodes.getTarget());
+        assertEquals(Expectation.Type.OR, nodes.getMatchType());
+        assertEquals(Arrays.asList("Nodes", "Node List"), nodes.getTextPresent());
+
+        final Expectation users = expectations.get(1);
+        assertEquals("opennms/admin/index.jsp", users.getStartUrl());
+        assertEquals("link=Configure Users", users.getTarget());
+        assertEquals(Expectation.Type.AND, users.getMatchType());
+        assertEquals(Arrays.asList("Users", "Groups"), users.getTextPresent());
+    }
+
+    @Test
+    public void testReadSiteMapXPathUnion() throws Exception {
+        final List<Expectation> expectations = read(
+            "opennms/index.jsp\t//a[text()='Nodes'] | //a[text()='Node List']\tNodes",
+            "opennms/index.jsp\t//a[@href='element/nodeList.htm']|//a[@href='outage/index.htm']"
+        );
+        assertEquals(2, expectations.size());
+
+        assertEquals("//a[text()='Nodes'] | //a[text()='Node List']", expectations.get(0).getTarget());
+        assertEquals(Arrays.asList("Nodes"), expectations.get(0).getTextPresent());
+
+        assertEquals("//a[@href='element/nodeList.htm']|//a[@href='outage/index.htm']", expectations.get(1).getTarget());
+        assertEquals(0, expectations.get(1).getTextPresent().size());
+    }
+
+    @Test
+    public void testReadSiteMapCommentsOnly() throws Exception {
+        assertTrue(read("# start URL\ttarget", "", "   ").isEmpty());
+    }
+
+    @Test(expected=IOException.class)
+    public void testReadSiteMapMissingTarget() throws Exception {
+        read("opennms/index.jsp | link=Node List");
+    }
+}